@@ -0,0 +1,100 @@
+package com.library.controller;
+
+import com.library.benchmark.SyntheticDataset;
+import com.library.dao.CSVHandler;
+import com.library.dao.CsvLibraryStore;
+import com.library.model.Book;
+import com.library.model.Loan;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Checkouts and returns change state, so each measurement is a batch of
+// BATCH operations on books prepared before the batch starts; the score is
+// the time per batch. Persistence runs as in the application, on the
+// write-behind thread.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = CirculationBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = CirculationBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CirculationBenchmark {
+    static final int BATCH = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path dir;
+    private LibraryController controller;
+    private String userId;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = SyntheticDataset.create(rows);
+        controller = new LibraryController(new CsvLibraryStore(new CSVHandler(dir.toString())));
+        userId = controller.getAllUsers().get(0).getId();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        controller.close();
+        SyntheticDataset.delete(dir);
+    }
+
+    private List<String> availableBookIds() {
+        return controller.getAvailableBooks().stream()
+                .limit(BATCH)
+                .map(Book::getId)
+                .toList();
+    }
+
+    // Books to check out; the previous batch's loans are returned first
+    @State(Scope.Benchmark)
+    public static class Checkouts {
+        List<String> bookIds;
+        List<String> loanIds = new ArrayList<>();
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(CirculationBenchmark benchmark) {
+            if (!loanIds.isEmpty()) {
+                benchmark.controller.returnBooks(loanIds);
+                loanIds.clear();
+            }
+            bookIds = benchmark.availableBookIds();
+            next = 0;
+        }
+    }
+
+    // Active loans to return
+    @State(Scope.Benchmark)
+    public static class Returns {
+        List<String> loanIds;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(CirculationBenchmark benchmark) {
+            loanIds = benchmark.controller.createLoans(benchmark.userId, benchmark.availableBookIds()).stream()
+                    .map(Loan::getId)
+                    .toList();
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public Loan createLoan(Checkouts checkouts) {
+        Loan loan = controller.createLoan(userId, checkouts.bookIds.get(checkouts.next++));
+        checkouts.loanIds.add(loan.getId());
+        return loan;
+    }
+
+    @Benchmark
+    public double returnBook(Returns returns) {
+        return controller.returnBook(returns.loanIds.get(returns.next++));
+    }
+}
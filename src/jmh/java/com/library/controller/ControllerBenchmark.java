@@ -0,0 +1,59 @@
+package com.library.controller;
+
+import com.library.benchmark.SyntheticDataset;
+import com.library.dao.CSVHandler;
+import com.library.dao.CsvLibraryStore;
+import com.library.model.Book;
+import com.library.model.Loan;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Read paths the UI hits on every keystroke or dashboard refresh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ControllerBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path dir;
+    private LibraryController controller;
+    private String[] queries;
+    private int nextQuery;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = SyntheticDataset.create(rows);
+        controller = new LibraryController(new CsvLibraryStore(new CSVHandler(dir.toString())));
+        // A common word, a rarer pair, an author's surname and a query with no match
+        queries = new String[]{"river", "silent shadow", "García", "no such title"};
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        controller.close();
+        SyntheticDataset.delete(dir);
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return controller.searchBooks(queries[nextQuery++ % queries.length]);
+    }
+
+    @Benchmark
+    public List<Book> getMostPopularBooks() {
+        return controller.getMostPopularBooks(10);
+    }
+
+    @Benchmark
+    public List<Loan> getOverdueLoans() {
+        return controller.getOverdueLoans();
+    }
+}
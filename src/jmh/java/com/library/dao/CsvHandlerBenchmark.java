@@ -0,0 +1,50 @@
+package com.library.dao;
+
+import com.library.benchmark.SyntheticDataset;
+import com.library.model.Book;
+import com.library.model.Loan;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Full snapshot file reads and writes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvHandlerBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path dir;
+    private CSVHandler handler;
+    private List<Loan> loans;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = SyntheticDataset.create(rows);
+        handler = new CSVHandler(dir.toString());
+        loans = handler.loadLoans();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        handler.close();
+        SyntheticDataset.delete(dir);
+    }
+
+    @Benchmark
+    public List<Book> loadBooks() {
+        return handler.loadBooks();
+    }
+
+    @Benchmark
+    public void saveLoans() {
+        handler.saveLoans(loans);
+    }
+}
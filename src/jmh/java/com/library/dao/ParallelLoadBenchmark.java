@@ -0,0 +1,52 @@
+package com.library.dao;
+
+import com.library.benchmark.SyntheticDataset;
+import com.library.model.Book;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// How ParallelCsvLoader scales with the number of worker threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelLoadBenchmark {
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Path dir;
+    private Path booksFile;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = SyntheticDataset.create(rows);
+        booksFile = Paths.get(dir.toString(), "books.csv");
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        SyntheticDataset.delete(dir);
+    }
+
+    @Benchmark
+    public List<Book> loadBooks() throws IOException {
+        return ParallelCsvLoader.load(booksFile, () -> {
+            StringPool strings = new StringPool();
+            return line -> CSVHandler.parseBook(line, 0, strings);
+        }, pool);
+    }
+}
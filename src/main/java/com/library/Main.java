@@ -2,16 +2,55 @@ package com.library;
 
 import com.library.controller.LibraryController;
 
+import com.library.tasks.BackgroundTask;
+import com.library.tasks.TaskExecutor;
 import com.library.vue.LoginFrame;
-import com.library.vue.MainFrame;
 
-import javax.swing.SwingUtilities;
+import javax.swing.*;
+import java.awt.*;
 
 public class Main {
     public static void main(String[] args) {
+        // The data loads as a background task while a small window says so,
+        // instead of freezing the event thread before anything is on screen
+        BackgroundTask<LibraryController> load = TaskExecutor.getDefault()
+                .submit("Loading library", context -> {
+                    LibraryController controller = new LibraryController();
+                    // Drains pending writes when the window's Exit calls System.exit
+                    Runtime.getRuntime().addShutdownHook(new Thread(controller::close, "library-shutdown"));
+                    return controller;
+                });
         SwingUtilities.invokeLater(() -> {
-            LibraryController controller = new LibraryController();
-            new LoginFrame(controller).setVisible(true);
+            JWindow splash = loadingWindow();
+            load.future().whenComplete((controller, failure) -> SwingUtilities.invokeLater(() -> {
+                splash.dispose();
+                if (failure != null) {
+                    failure.printStackTrace();
+                    JOptionPane.showMessageDialog(null,
+                            "Could not load the library data: " + failure.getCause(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    System.exit(1);
+                }
+                new LoginFrame(controller).setVisible(true);
+            }));
         });
     }
+
+    private static JWindow loadingWindow() {
+        JWindow window = new JWindow();
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createLineBorder(new Color(200, 200, 200)),
+                BorderFactory.createEmptyBorder(15, 20, 15, 20)));
+        panel.add(new JLabel("Loading library data..."), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        window.add(panel);
+        window.setSize(320, 90);
+        window.setLocationRelativeTo(null);
+        window.setVisible(true);
+        return window;
+    }
 }
@@ -0,0 +1,132 @@
+package com.library.controller;
+
+import com.library.model.Book;
+
+import java.util.*;
+
+// Inverted index over book title, author and genre. Every field is split
+// into lowercase trigrams; a query of three or more characters only checks
+// the books sharing its rarest trigram, so substring search keeps its old
+// semantics without touching the whole catalog. Lowercased fields are cached
+// per book, so a query allocates nothing per candidate.
+class BookSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int GENRE_WEIGHT = 1;
+
+    private record Entry(Book book, String title, String author, String genre) {
+        static Entry of(Book book) {
+            return new Entry(book, lower(book.getTitle()), lower(book.getAuthor()), lower(book.getGenre()));
+        }
+
+        private static String lower(String value) {
+            return value == null ? "" : value.toLowerCase();
+        }
+    }
+
+    private record Match(Book book, int score, String title) {
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    BookSearchIndex(Collection<Book> books) {
+        books.forEach(this::put);
+    }
+
+    void put(Book book) {
+        Entry old = entries.get(book.getId());
+        if (old != null && Objects.equals(old.book().getTitle(), book.getTitle())
+                && Objects.equals(old.book().getAuthor(), book.getAuthor())
+                && Objects.equals(old.book().getGenre(), book.getGenre())) {
+            // Same text, e.g. a copy with new availability: its grams stand
+            entries.put(book.getId(), new Entry(book, old.title(), old.author(), old.genre()));
+            return;
+        }
+        remove(book.getId());
+        Entry entry = Entry.of(book);
+        entries.put(book.getId(), entry);
+        for (String gram : grams(entry)) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(book.getId());
+        }
+    }
+
+    void remove(String bookId) {
+        Entry entry = entries.remove(bookId);
+        if (entry == null) {
+            return;
+        }
+        for (String gram : grams(entry)) {
+            Set<String> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(bookId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    // Books whose title, author or genre contains the query, best matches first
+    List<Book> search(String query) {
+        String searchQuery = query.toLowerCase();
+        if (searchQuery.isEmpty()) {
+            return entries.values().stream().map(Entry::book).toList();
+        }
+
+        Collection<String> candidates = candidates(searchQuery);
+        List<Match> matches = new ArrayList<>();
+        for (String id : candidates) {
+            Entry entry = entries.get(id);
+            int score = score(entry.title(), searchQuery, TITLE_WEIGHT)
+                    + score(entry.author(), searchQuery, AUTHOR_WEIGHT)
+                    + score(entry.genre(), searchQuery, GENRE_WEIGHT);
+            if (score > 0) {
+                matches.add(new Match(entry.book(), score, entry.title()));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::score).reversed().thenComparing(Match::title));
+        return matches.stream().map(Match::book).toList();
+    }
+
+    private Collection<String> candidates(String searchQuery) {
+        if (searchQuery.length() < GRAM_LENGTH) {
+            return entries.keySet();
+        }
+        Set<String> smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= searchQuery.length(); i++) {
+            Set<String> ids = postings.get(searchQuery.substring(i, i + GRAM_LENGTH));
+            if (ids == null) {
+                return List.of();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest;
+    }
+
+    // A field match counts its weight, doubled when the query starts a word
+    private static int score(String field, String searchQuery, int weight) {
+        int at = field.indexOf(searchQuery);
+        if (at < 0) {
+            return 0;
+        }
+        return at == 0 || !Character.isLetterOrDigit(field.charAt(at - 1)) ? weight * 2 : weight;
+    }
+
+    private static Set<String> grams(Entry entry) {
+        Set<String> grams = new HashSet<>();
+        addGrams(grams, entry.title());
+        addGrams(grams, entry.author());
+        addGrams(grams, entry.genre());
+        return grams;
+    }
+
+    private static void addGrams(Set<String> grams, String field) {
+        for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+            grams.add(field.substring(i, i + GRAM_LENGTH));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.library.controller;
+
+import com.library.model.User;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Users by email for login, case-insensitive. Indexed users are never
+// changed in place (the controller indexes a new copy instead), so the user
+// filed under an id still holds the email it was filed under. Emails are
+// meant to be unique; if two users share one, the one indexed last is found.
+// Logins look users up without the lock, in a copy of the email map that
+// publish() brings up to date once a unit of work is committed or rolled back.
+class CredentialIndex {
+    private final Map<String, User> indexed = new HashMap<>();
+    private final Map<String, User> byEmail = new HashMap<>();
+    private final Map<String, User> published = new ConcurrentHashMap<>();
+    private final Set<String> unpublished = new HashSet<>();
+
+    CredentialIndex(Collection<User> users) {
+        users.forEach(this::put);
+        publish();
+    }
+
+    static String key(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    void put(User user) {
+        remove(user.getId());
+        indexed.put(user.getId(), user);
+        byEmail.put(key(user.getEmail()), user);
+        unpublished.add(key(user.getEmail()));
+    }
+
+    void remove(String userId) {
+        User old = indexed.remove(userId);
+        if (old != null) {
+            byEmail.remove(key(old.getEmail()), old);
+            unpublished.add(key(old.getEmail()));
+        }
+    }
+
+    void publish() {
+        for (String key : unpublished) {
+            User user = byEmail.get(key);
+            if (user != null) {
+                published.put(key, user);
+            } else {
+                published.remove(key);
+            }
+        }
+        unpublished.clear();
+    }
+
+    // As of the last publish(); safe without the lock
+    User byEmail(String email) {
+        return published.get(key(email));
+    }
+}
@@ -0,0 +1,124 @@
+package com.library.controller;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Primary-key index: entities live in an array-backed list of slots and
+// a hash map resolves id -> slot, so lookups, inserts, updates and deletes
+// are all O(1). Deleting moves the last entity into the freed slot.
+// The writer (holding the controller's write lock) sees its changes at
+// once; lock-free readers see them through committed(id) only after
+// publish(), which the controller calls once a unit of work is committed
+// or rolled back. Entities are never changed once indexed, so handing the
+// reference over through a volatile field is enough.
+class IdIndex<T> {
+    private static final class Slot<T> {
+        final String id;
+        int index; // In slots, or -1 once removed
+        volatile T committed;
+
+        Slot(String id, int index) {
+            this.id = id;
+            this.index = index;
+        }
+    }
+
+    private final Function<T, String> idOf;
+    private final List<T> slots = new ArrayList<>();
+    private final Map<String, Slot<T>> slotById = new ConcurrentHashMap<>();
+    private final List<T> view = Collections.unmodifiableList(slots);
+    private final List<Slot<T>> unpublished = new ArrayList<>();
+
+    IdIndex(Function<T, String> idOf) {
+        this.idOf = idOf;
+    }
+
+    IdIndex(Function<T, String> idOf, Collection<T> entities) {
+        this(idOf);
+        entities.forEach(this::put);
+        publish();
+    }
+
+    // Inserts the entity, or replaces the one with the same id in place.
+    // Returns the slot it occupies.
+    int put(T entity) {
+        String id = idOf.apply(entity);
+        Slot<T> slot = slotById.get(id);
+        if (slot == null) {
+            slot = new Slot<>(id, -1);
+            slotById.put(id, slot);
+        }
+        if (slot.index >= 0) {
+            slots.set(slot.index, entity);
+        } else {
+            slots.add(entity);
+            slot.index = slots.size() - 1;
+        }
+        unpublished.add(slot);
+        return slot.index;
+    }
+
+    T get(String id) {
+        Slot<T> slot = slotById.get(id);
+        return slot != null && slot.index >= 0 ? slots.get(slot.index) : null;
+    }
+
+    T get(int slot) {
+        return slots.get(slot);
+    }
+
+    // The entity as of the last publish(); safe without the lock
+    T committed(String id) {
+        Slot<T> slot = slotById.get(id);
+        return slot != null ? slot.committed : null;
+    }
+
+    int slotOf(String id) {
+        Slot<T> slot = slotById.get(id);
+        return slot != null ? slot.index : -1;
+    }
+
+    boolean contains(String id) {
+        return slotOf(id) >= 0;
+    }
+
+    // The removed id stays mapped, with its committed entity, until publish()
+    T remove(String id) {
+        Slot<T> slot = slotById.get(id);
+        if (slot == null || slot.index < 0) {
+            return null;
+        }
+        T removed = slots.get(slot.index);
+        T last = slots.remove(slots.size() - 1);
+        if (slot.index < slots.size()) {
+            slots.set(slot.index, last);
+            slotById.get(idOf.apply(last)).index = slot.index;
+        }
+        slot.index = -1;
+        unpublished.add(slot);
+        return removed;
+    }
+
+    // Makes the writer's changes since the last call visible to committed()
+    void publish() {
+        for (Slot<T> slot : unpublished) {
+            if (slot.index >= 0) {
+                slot.committed = slots.get(slot.index);
+            } else {
+                slot.committed = null;
+                slotById.remove(slot.id, slot);
+            }
+        }
+        unpublished.clear();
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    // Read-only live view in slot order
+    List<T> values() {
+        return view;
+    }
+}
@@ -0,0 +1,19 @@
+package com.library.controller;
+
+// Outcome of a bulk import, or its progress so far. Rows are imported,
+// skipped as duplicates of an existing id (or email), or rejected as invalid.
+public record ImportResult(long imported, long duplicates, long invalid,
+                           long bytesRead, long totalBytes, long elapsedNanos) {
+
+    public long processed() {
+        return imported + duplicates + invalid;
+    }
+
+    public double recordsPerSecond() {
+        return elapsedNanos > 0 ? processed() * 1e9 / elapsedNanos : 0;
+    }
+
+    public int percentDone() {
+        return totalBytes > 0 ? (int) Math.min(100, bytesRead * 100 / totalBytes) : 100;
+    }
+}
@@ -1,316 +1,1203 @@
 package com.library.controller;
 
 import com.library.model.*;
-import com.library.dao.CSVHandler;
-import com.library.vue.LoginFrame;
-import com.library.vue.MainFrame;
-import com.opencsv.CSVWriter;
+import com.library.dao.CsvBatchReader;
+import com.library.dao.LibraryData;
+import com.library.dao.LibraryStore;
+import com.library.metrics.Counter;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.security.PasswordHasher;
+import com.library.tasks.BackgroundTask;
+import com.library.tasks.TaskExecutor;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-public class LibraryController {
-    private CSVHandler csvHandler;
-    private List<Book> books;
-    private List<User> users;
-    private List<Loan> loans;
-    private User currentUser;
+// Safe to share between threads (several circulation desks). Each mutation
+// is one unit of work under the exclusive lock, covering the index updates,
+// the availability check of a checkout and the store's transaction
+// boundary. Making the unit durable (the fsync, and the occasional
+// compaction) is left to a write-behind thread, so mutations return without
+// touching the disk.
+// Indexed entities are never changed in place: a mutation indexes a changed
+// copy, so the entities reads return are stable snapshots that callers must
+// not modify. The by-id getters return private copies; edits go through
+// update*(id, edits), which apply them to a copy inside the unit of work.
+// Lookups by key (an id, a login email, a user's or a book's loans) take no
+// lock: each index publishes what a unit changed once the unit is committed
+// or rolled back, so they never wait for a writer and never see a unit in
+// progress. Scans over a whole collection still take the shared lock.
+public class LibraryController implements AutoCloseable {
+    // Sessions end after -Dlibrary.session.idle.minutes without a request
+    // (default 30) or -Dlibrary.session.max.hours after login (default 12)
+    private static final long SESSION_IDLE_NANOS = TimeUnit.MINUTES.toNanos(
+            Long.getLong("library.session.idle.minutes", 30));
+    private static final long SESSION_MAX_AGE_NANOS = TimeUnit.HOURS.toNanos(
+            Long.getLong("library.session.max.hours", 12));
+    private static final long SESSION_SWEEP_SECONDS = 60;
+
+    private final LibraryStore store;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final WriteBehindPersister persister;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicInteger bulkImports = new AtomicInteger();
+    private final AtomicBoolean checkpointRequested = new AtomicBoolean();
+    private final IdIndex<Book> books;
+    private final IdIndex<User> users;
+    private final CredentialIndex credentials;
+    private final IdIndex<Loan> loans;
+    private final LoanIndex loanIndex;
+    private final BookSearchIndex searchIndex;
+    private final LibraryStatistics statistics;
+    private final PopularityTracker popularity;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private volatile Session currentSession;
+    private final ScheduledExecutorService sessionSweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "library-sessions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LoginCache loginCache = new LoginCache();
+    private final TaskExecutor tasks = TaskExecutor.getDefault();
+    private final ReentrantLock maintenance = new ReentrantLock(); // Checkpoints and backups, one at a time
+    private BackgroundTask<Void> passwordMigration; // Guarded by this
+    private final Deque<Runnable> undoLog = new ArrayDeque<>(); // Guarded by the write lock
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new HashMap<>(); // Removed again on close()
+    private final LatencyHistogram readLockWait = metrics.histogram("library_lock_wait_seconds",
+            "Time spent waiting for the controller lock", "mode", "read");
+    private final LatencyHistogram writeLockWait = metrics.histogram("library_lock_wait_seconds",
+            "Time spent waiting for the controller lock", "mode", "write");
+    private final Counter loginSuccesses = metrics.counter("library_logins_total",
+            "Login attempts by outcome", "result", "success");
+    private final Counter loginFailures = metrics.counter("library_logins_total",
+            "Login attempts by outcome", "result", "failure");
+    private final Counter loginCacheHits = metrics.counter("library_login_cache_total",
+            "Logins of known users by whether the verified-login cache answered", "result", "hit");
+    private final Counter loginCacheMisses = metrics.counter("library_login_cache_total",
+            "Logins of known users by whether the verified-login cache answered", "result", "miss");
 
     public LibraryController() {
-        this.csvHandler = new CSVHandler();
-        loadData();
+        this(LibraryStore.open());
+    }
+
+    public LibraryController(LibraryStore store) {
+        this.store = store;
+        LibraryData data = store.load();
+        List<Book> loadedBooks = data.books();
+        List<User> loadedUsers = data.users();
+        loadedUsers.forEach(LibraryController::markStoredPassword);
+        List<Loan> loadedLoans = data.loans();
+        this.books = new IdIndex<>(Book::getId, loadedBooks);
+        this.users = new IdIndex<>(User::getId, loadedUsers);
+        this.credentials = new CredentialIndex(loadedUsers);
+        this.loans = new IdIndex<>(Loan::getId, loadedLoans);
+        this.loanIndex = new LoanIndex(loadedLoans);
+        this.searchIndex = new BookSearchIndex(loadedBooks);
+        this.statistics = new LibraryStatistics(loadedBooks, loadedLoans);
+        this.popularity = new PopularityTracker(loadedLoans);
+        this.persister = new WriteBehindPersister(store, this::checkpoint);
+        registerGauges();
+        sessionSweeper.scheduleWithFixedDelay(this::expireSessions,
+                SESSION_SWEEP_SECONDS, SESSION_SWEEP_SECONDS, TimeUnit.SECONDS);
+        migratePasswords();
+    }
+
+    // Every operation is timed from the lock request, so the latency includes
+    // time spent waiting for other desks; the wait is also recorded on its own
+    private <T> T read(String operation, Supplier<T> query) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            readLockWait.recordSince(start);
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+            timer(operation).recordSince(start);
+        }
+    }
+
+    // Reads published index state only, so there is no lock to wait for
+    private <T> T lookup(String operation, Supplier<T> query) {
+        long start = System.nanoTime();
+        try {
+            return query.get();
+        } finally {
+            timer(operation).recordSince(start);
+        }
+    }
+
+    // Runs one unit of work, commits it and queues it for the disk. A unit
+    // that throws is rolled back, in memory and in the store, before the
+    // exception reaches the caller.
+    private <T> T write(String operation, Supplier<T> unit) {
+        long start = System.nanoTime();
+        T result;
+        lock.writeLock().lock();
+        try {
+            writeLockWait.recordSince(start);
+            try {
+                result = unit.get();
+                store.commit();
+            } catch (RuntimeException | Error e) {
+                rollBack(e);
+                throw e;
+            } finally {
+                undoLog.clear();
+                publish();
+            }
+        } finally {
+            lock.writeLock().unlock();
+            timer(operation).recordSince(start);
+        }
+        persister.submit();
+        return result;
+    }
+
+    // What the unit left behind, committed or rolled back, becomes visible to lookups
+    private void publish() {
+        books.publish();
+        users.publish();
+        credentials.publish();
+        loans.publish();
+        loanIndex.publish();
+    }
+
+    private void write(String operation, Runnable unit) {
+        write(operation, () -> {
+            unit.run();
+            return null;
+        });
+    }
+
+    private LatencyHistogram timer(String operation) {
+        return timers.computeIfAbsent(operation, op -> metrics.histogram("library_operation_seconds",
+                "Latency of controller operations, including lock wait", "operation", op));
+    }
+
+    // Dataset sizes and the write-behind backlog, read whenever metrics are
+    // exported. Registering again replaces the gauges of an older controller;
+    // close() removes this controller's, so the registry does not keep it.
+    private void registerGauges() {
+        gauge("library_books", "Books in the catalogue", statistics::getTotalBooks);
+        gauge("library_available_books", "Books on the shelf", statistics::getAvailableBooks);
+        gauge("library_users", "Registered users", () -> {
+            lock.readLock().lock();
+            try {
+                return users.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+        gauge("library_loans", "Loans, returned or not", statistics::getTotalLoans);
+        gauge("library_active_loans", "Loans not yet returned", statistics::getActiveLoans);
+        gauge("library_overdue_loans", "Active loans past their due date", statistics::getOverdueLoans);
+        gauge("library_pending_writes", "Committed units of work not yet on disk", persister::getPending);
+        gauge("library_sessions", "Open login sessions", sessions::size);
+    }
+
+    private void gauge(String name, String help, DoubleSupplier value) {
+        gauges.put(name, value);
+        metrics.gauge(name, help, value);
+    }
+
+    // Runs on the persister thread only. The read lock keeps writers (and
+    // so new journal records) out while the snapshot is taken, but lets
+    // searches and table reads carry on.
+    private void checkpoint() {
+        if (bulkImports.get() > 0) {
+            return; // Compacted once when the import ends
+        }
+        if (!store.isCheckpointDue() && !checkpointRequested.get()) {
+            return;
+        }
+        maintenance.lock();
+        lock.readLock().lock();
+        try {
+            if (store.isCheckpointDue() || checkpointRequested.getAndSet(false)) {
+                store.checkpoint(new LibraryData(books.values(), users.values(), loans.values()));
+            }
+        } finally {
+            lock.readLock().unlock();
+            maintenance.unlock();
+        }
+    }
+
+    // Takes a backup of everything changed so far and returns its manifest.
+    // Only checkpoints rewrite the data files, so keeping them out is enough
+    // for a consistent backup: writers, searches and reads all carry on while
+    // it runs. The journal is flushed by the persister rather than here, as
+    // the backup may run on a task that gets cancelled, and an interrupt
+    // during the journal's I/O would close it; the wait comes before the
+    // maintenance lock, which the persister's checkpoint needs.
+    public Path backup() throws IOException {
+        long start = System.nanoTime();
+        try {
+            persister.awaitFlushed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Backup cancelled");
+        }
+        maintenance.lock();
+        try {
+            return store.backup();
+        } finally {
+            maintenance.unlock();
+            timer("backup").recordSince(start);
+        }
+    }
+
+    // Rewrites the snapshot files soon even if the journal is short, e.g. to
+    // stop them holding data that must not stay on disk
+    private void requestCheckpoint() {
+        checkpointRequested.set(true);
+        persister.submit();
+    }
+
+    // Units of work committed in memory but not yet on disk
+    public int getPendingWrites() {
+        return persister.getPending();
+    }
+
+    // Notified from a background thread whenever getPendingWrites() changes
+    public void addPersistenceListener(Runnable listener) {
+        persister.addListener(listener);
+    }
+
+    public void removePersistenceListener(Runnable listener) {
+        persister.removeListener(listener);
+    }
+
+    // Why changes are not reaching the disk (retried in the background), or
+    // null when saving works
+    public RuntimeException getPersistenceFailure() {
+        return persister.getFailure();
+    }
+
+    // Blocks until every change made so far is durable; throws StoreException
+    // if they cannot be saved
+    public void flush() {
+        try {
+            persister.awaitFlushed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Drains pending writes and closes the store. The entry points also
+    // call it on JVM shutdown; nothing global keeps a closed controller alive.
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            BackgroundTask<Void> migration;
+            synchronized (this) {
+                migration = passwordMigration;
+            }
+            if (migration != null) {
+                migration.cancel();
+                migration.future().handle((result, failure) -> null).join(); // At most one hash away
+            }
+            sessionSweeper.shutdownNow();
+            gauges.forEach((name, gauge) -> metrics.removeGauge(name, gauge));
+            persister.close();
+            store.close();
+        }
+    }
+
+    // Keeps the id index and every derived index in step for one entity.
+    // Each change is undoable until its unit of work commits.
+    private void indexBook(Book book) {
+        touchBook(book.getId());
+        putBook(book);
+    }
+
+    private boolean unindexBook(String bookId) {
+        if (!books.contains(bookId)) {
+            return false;
+        }
+        touchBook(bookId);
+        removeBook(bookId);
+        return true;
+    }
+
+    private void indexUser(User user) {
+        touchUser(user.getId());
+        putUser(user);
+    }
+
+    private boolean unindexUser(String userId) {
+        if (!users.contains(userId)) {
+            return false;
+        }
+        touchUser(userId);
+        removeUser(userId);
+        return true;
+    }
+
+    // Every loan indexed here is a fresh object, not yet seen by readers
+    private void indexLoan(Loan loan) {
+        shareIds(loan);
+        touchLoan(loan.getId());
+        putLoan(loan);
+    }
+
+    // A loan refers to the id strings its user and book hold, as loaded ones do
+    private void shareIds(Loan loan) {
+        User user = users.get(loan.getUserId());
+        if (user != null) {
+            loan.setUserId(user.getId());
+        }
+        Book book = books.get(loan.getBookId());
+        if (book != null) {
+            loan.setBookId(book.getId());
+        }
+    }
+
+    private boolean unindexLoan(String loanId) {
+        if (!loans.contains(loanId)) {
+            return false;
+        }
+        touchLoan(loanId);
+        removeLoan(loanId);
+        return true;
+    }
+
+    private void putBook(Book book) {
+        books.put(book);
+        searchIndex.put(book);
+        statistics.putBook(book);
+    }
+
+    private void removeBook(String bookId) {
+        books.remove(bookId);
+        searchIndex.remove(bookId);
+        statistics.removeBook(bookId);
+    }
+
+    private void putUser(User user) {
+        users.put(user);
+        credentials.put(user);
+    }
+
+    private void removeUser(String userId) {
+        users.remove(userId);
+        credentials.remove(userId);
+    }
+
+    private void putLoan(Loan loan) {
+        loans.put(loan);
+        loanIndex.put(loan);
+        statistics.putLoan(loan);
+        popularity.put(loan);
+    }
+
+    private void removeLoan(String loanId) {
+        loans.remove(loanId);
+        loanIndex.remove(loanId);
+        statistics.removeLoan(loanId);
+        popularity.remove(loanId);
+    }
+
+    //***********************************************************************************
+    // Rollback. Before a unit of work replaces or removes an entity, the
+    // index helpers above record the object indexed under its id (untouched,
+    // since changes are made to copies). If the unit throws, the records are
+    // applied newest first, which puts every touched entity and index back
+    // as it was, and the store's open transaction is aborted.
+    private void rollBack(Throwable cause) {
+        while (!undoLog.isEmpty()) {
+            undoLog.pop().run();
+        }
+        try {
+            store.abort();
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
     }
 
-    private void loadData() {
-        this.books = csvHandler.loadBooks();
-        this.users = csvHandler.loadUsers();
-        this.loans = csvHandler.loadLoans();
+    private void touchBook(String bookId) {
+        Book indexed = books.get(bookId);
+        undoLog.push(indexed != null ? () -> putBook(indexed) : () -> removeBook(bookId));
     }
 
-    // Authentication
+    private void touchUser(String userId) {
+        User indexed = users.get(userId);
+        undoLog.push(indexed != null ? () -> putUser(indexed) : () -> removeUser(userId));
+    }
+
+    private void touchLoan(String loanId) {
+        Loan indexed = loans.get(loanId);
+        undoLog.push(indexed != null ? () -> putLoan(indexed) : () -> removeLoan(loanId));
+    }
+
+    // Edits run on a copy, and must leave its id alone
+    private static void requireSameId(String id, String editedId) {
+        if (!id.equals(editedId)) {
+            throw new IllegalArgumentException("Cannot change id " + id + " to " + editedId);
+        }
+    }
+
+    // Authentication. The credential lookup takes no lock and the password
+    // hash runs outside it too; a login verified recently from the
+    // same email and password is answered by the cache without hashing.
+    // Returns null when the credentials are wrong.
+    public Session openSession(String email, String password) {
+        long start = System.nanoTime();
+        try {
+            User user = lookup("findCredentials", () -> credentials.byEmail(email));
+            if (user == null) {
+                PasswordHasher.verify(password, UnknownUser.HASH); // Costs the same as a wrong password
+                loginFailures.increment();
+                return null;
+            }
+            String cacheKey = CredentialIndex.key(email);
+            String stored = user.getPassword();
+            if (loginCache.matches(cacheKey, password, stored)) {
+                loginCacheHits.increment();
+            } else {
+                loginCacheMisses.increment();
+                if (!PasswordHasher.verify(password, stored)) {
+                    loginFailures.increment();
+                    return null;
+                }
+                loginCache.remember(cacheKey, password, upgradePassword(user, stored, password));
+            }
+
+            Session session = new Session(user);
+            sessions.put(session.getId(), session);
+            loginSuccesses.increment();
+            return session;
+        } finally {
+            timer("login").recordSince(start);
+        }
+    }
+
+    // The open session with this id, or null; using it keeps it from idling out
+    public Session getSession(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null || !session.isOpen()) {
+            return null;
+        }
+        if (hasExpired(session, System.nanoTime())) {
+            closeSession(session);
+            return null;
+        }
+        session.touch();
+        return session;
+    }
+
+    // This window's own session lasts until logout
+    private boolean hasExpired(Session session, long now) {
+        return session != currentSession && session.isExpired(now, SESSION_IDLE_NANOS, SESSION_MAX_AGE_NANOS);
+    }
+
+    // Runs on the sweeper thread, so sessions that are never used again do
+    // not pile up
+    private void expireSessions() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> {
+            if (hasExpired(session, now)) {
+                session.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public void closeSession(Session session) {
+        session.close();
+        sessions.remove(session.getId());
+    }
+
+    private void closeSessionsOf(String userId) {
+        sessions.values().removeIf(session -> {
+            if (session.getUser().getId().equals(userId)) {
+                session.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    // Login for this process's own window: opens a session and makes it the
+    // current one. The caller shows the main window with this controller.
     public boolean login(String email, String password) {
-        Optional<User> user = users.stream()
-                .filter(u -> u.getEmail().equals(email) && u.getPassword().equals(password))
-                .findFirst();
-
-        if (user.isPresent()) {
-            currentUser = user.get();
-            System.out.println("Login successful for user: " + currentUser.getName()); // Debug line
-            LibraryController controller = new LibraryController();
-            new MainFrame(controller).setVisible(true);
-            return true;
+        Session session = openSession(email, password);
+        if (session == null) {
+            return false;
+        }
+        Session previous = currentSession;
+        currentSession = session;
+        CurrentUser.setUser(session.getUser());
+        if (previous != null) {
+            closeSession(previous);
         }
-        System.out.println("Login failed for email: " + email); // Debug line
-        return false;
+        return true;
+    }
+
+    // Compared against when the email is unknown, so response time does not
+    // reveal which emails have accounts; hashed on first use
+    private static final class UnknownUser {
+        static final String HASH = PasswordHasher.hash(UUID.randomUUID().toString());
+    }
+
+    // Re-hashes a verified password that is still plain text or was hashed at
+    // a lower cost than configured. Returns the stored value now in effect.
+    private String upgradePassword(User user, String stored, String password) {
+        if (!PasswordHasher.needsRehash(stored)) {
+            return stored;
+        }
+        String upgraded = PasswordHasher.hash(password);
+        String current = write("upgradePassword", () -> {
+            User indexed = users.get(user.getId());
+            if (indexed != user) {
+                return indexed != null ? indexed.getPassword() : stored; // Changed meanwhile; keep the newer one
+            }
+            User upgradedUser = new User(user);
+            upgradedUser.setPasswordHash(upgraded);
+            indexUser(upgradedUser);
+            store.users().save(upgradedUser);
+            return upgraded;
+        });
+        if (!PasswordHasher.isHashed(stored)) {
+            requestCheckpoint(); // Drop the plain text copy from the snapshot files
+        }
+        return current;
+    }
+
+    // Callers may pass a plain text password, or one already hashed with
+    // setPasswordHash (the window hashes on a task first, so its event thread
+    // never runs PBKDF2); hash plain text before the lock is taken
+    private static void hashPassword(User user) {
+        if (user.getPassword() != null && !user.isPasswordHashed()) {
+            user.setPasswordHash(PasswordHasher.hash(user.getPassword()));
+        }
+    }
+
+    // Stored and imported rows carry nothing but the stored form of the
+    // password, so its format is all there is to go by: a hash, or plain
+    // text written before passwords were hashed, which the migration hashes
+    private static void markStoredPassword(User user) {
+        if (PasswordHasher.isHashed(user.getPassword())) {
+            user.setPasswordHash(user.getPassword());
+        }
+    }
+
+    // Hashes the plain text passwords of users.csv files written before
+    // passwords were hashed (and of imported users) on a background thread,
+    // one user per unit of work, so neither startup nor logins wait for it.
+    // A user who logs in first is upgraded by the login itself. The snapshot
+    // files are rewritten at the end so no plain text copy stays on disk.
+    // One migration runs at a time; a new one waits for the previous to end
+    private synchronized void migratePasswords() {
+        BackgroundTask<Void> previous = passwordMigration;
+        passwordMigration = tasks.submit("Password migration", context -> {
+            if (previous != null) {
+                previous.future().handle((result, failure) -> null).join();
+            }
+            List<User> legacy = read("findLegacyPasswords", () -> users.values().stream()
+                    .filter(user -> user.getPassword() != null && !user.isPasswordHashed())
+                    .toList());
+            int done = 0;
+            for (User user : legacy) {
+                context.progress(done++ * 100 / legacy.size(),
+                        String.format("%,d of %,d passwords", done, legacy.size()));
+                String plain = user.getPassword();
+                context.checkCancelled();
+                String hashed = PasswordHasher.hash(plain);
+                context.checkCancelled();
+                write("migratePassword", () -> {
+                    if (users.get(user.getId()) == user) { // Not upgraded or edited meanwhile
+                        User migrated = new User(user);
+                        migrated.setPasswordHash(hashed);
+                        indexUser(migrated);
+                        store.users().save(migrated);
+                    }
+                });
+            }
+            if (!legacy.isEmpty()) {
+                requestCheckpoint();
+            }
+            return null;
+        });
+    }
+
+    public Session getCurrentSession() {
+        return currentSession;
     }
 
     public User getCurrentUser() {
-        return currentUser;
+        Session session = currentSession;
+        return session != null ? session.getUser() : null;
     }
 
     public void logout() {
-        currentUser = null;
+        Session session = currentSession;
+        currentSession = null;
+        CurrentUser.setUser(null);
+        if (session != null) {
+            closeSession(session);
+        }
     }
 
     // Book management methods
+    // Indexes a copy, so the caller's object stays its own
     public void addBook(Book book) {
-        books.add(book);
-        csvHandler.saveBooks(books);
+        Book added = new Book(book);
+        write("addBook", () -> {
+            indexBook(added);
+            store.books().save(added);
+        });
     }
 
-    public void updateBook(Book book) {
-        int index = findBookIndex(book.getId());
-        if (index != -1) {
-            books.set(index, book);
-            csvHandler.saveBooks(books);
-        }
+    // Applies edits to a copy of the book as it is now, so fields the edits
+    // leave alone keep any change made since the caller read the book (a
+    // checkout's availability, say). Returns false if the book is gone.
+    public boolean updateBook(String bookId, Consumer<Book> edits) {
+        return write("updateBook", () -> {
+            Book indexed = books.get(bookId);
+            if (indexed == null) {
+                return false;
+            }
+            Book edited = new Book(indexed);
+            edits.accept(edited);
+            requireSameId(bookId, edited.getId());
+            indexBook(edited);
+            store.books().save(edited);
+            return true;
+        });
     }
 
     public void deleteBook(String bookId) {
-        books.removeIf(book -> book.getId().equals(bookId));
-        csvHandler.saveBooks(books);
+        write("deleteBook", () -> {
+            if (unindexBook(bookId)) {
+                store.books().delete(bookId);
+            }
+        });
     }
 
     public List<Book> getAllBooks() {
-        return new ArrayList<>(books);
+        return read("getAllBooks", () -> new ArrayList<>(books.values()));
     }
 
-    public List<Book> searchBooks(String query) {
-        // Create a final copy of the query
-        final String searchQuery = query.toLowerCase();
-        return books.stream()
-                .filter(book -> containsSearchTerm(book, searchQuery))
-                .toList();
+    // Live read-only views in index slot order, for table models that must
+    // not copy the whole dataset. They bypass the lock: read them only on the
+    // thread that mutates the controller (the Swing event thread in the GUI).
+    public List<Book> bookView() {
+        return books.values();
     }
 
-    // Helper method for search
-    private boolean containsSearchTerm(Book book, String searchQuery) {
-        return book.getTitle().toLowerCase().contains(searchQuery) ||
-                book.getAuthor().toLowerCase().contains(searchQuery) ||
-                book.getGenre().toLowerCase().contains(searchQuery);
+    public List<User> userView() {
+        return users.values();
     }
 
-    public List<Book> getAvailableBooks() {
-        return books.stream()
-                .filter(Book::isAvailable)
-                .toList();
+    public List<Loan> loanView() {
+        return loans.values();
     }
 
-    private int findBookIndex(String bookId) {
-        for (int i = 0; i < books.size(); i++) {
-            if (books.get(i).getId().equals(bookId)) {
-                return i;
+    // A copy, free to edit
+    public Book getBookById(String bookId) {
+        return lookup("getBookById", () -> {
+            Book book = books.committed(bookId);
+            return book != null ? new Book(book) : null;
+        });
+    }
+
+    // Matches on title, author or genre, ranked with title matches first
+    public List<Book> searchBooks(String query) {
+        return read("searchBooks", () -> searchIndex.search(query));
+    }
+
+    // The books matching a search (all of them for a blank query) and, if
+    // available is given, that availability, from offset on. Only the page
+    // is copied out of the index.
+    public Page<Book> findBooks(String query, Boolean available, int offset, int limit) {
+        return read("findBooks", () -> {
+            List<Book> candidates = query != null && !query.isBlank()
+                    ? searchIndex.search(query)
+                    : books.values();
+            List<Book> items = new ArrayList<>(Math.min(limit, candidates.size()));
+            int total = 0;
+            for (Book book : candidates) {
+                if (available == null || book.isAvailable() == available) {
+                    if (total >= offset && items.size() < limit) {
+                        items.add(book);
+                    }
+                    total++;
+                }
             }
-        }
-        return -1;
+            return new Page<>(items, Math.min(offset, total), total);
+        });
+    }
+
+    public List<Book> getAvailableBooks() {
+        return read("getAvailableBooks", () -> books.values().stream()
+                .filter(Book::isAvailable)
+                .toList());
     }
 
     // User management methods
+    // Indexes a copy, so the caller's object stays its own
     public void addUser(User user) {
-        users.add(user);
-        csvHandler.saveUsers(users);
+        User added = new User(user);
+        hashPassword(added);
+        write("addUser", () -> {
+            indexUser(added);
+            store.users().save(added);
+        });
     }
 
-    public void updateUser(User user) {
-        int index = findUserIndex(user.getId());
-        if (index != -1) {
-            users.set(index, user);
-            csvHandler.saveUsers(users);
+    // Applies edits to a copy of the user as it is now, inside the unit of
+    // work. A new password must be set with setPasswordHash, as PBKDF2 has no
+    // place under the lock; a plain one throws IllegalArgumentException.
+    // Verified logins cached under the old or the new email no longer count.
+    // Returns false if the user is gone.
+    public boolean updateUser(String userId, Consumer<User> edits) {
+        User[] change = write("updateUser", () -> {
+            User indexed = users.get(userId);
+            if (indexed == null) {
+                return null;
+            }
+            User edited = new User(indexed);
+            edits.accept(edited);
+            requireSameId(userId, edited.getId());
+            if (!edited.isPasswordHashed() && !Objects.equals(edited.getPassword(), indexed.getPassword())) {
+                throw new IllegalArgumentException("A new password must be set with setPasswordHash");
+            }
+            indexUser(edited);
+            store.users().save(edited);
+            return new User[]{indexed, edited};
+        });
+        if (change == null) {
+            return false;
+        }
+        for (User user : change) {
+            loginCache.forget(CredentialIndex.key(user.getEmail()));
         }
+        return true;
     }
 
     public void deleteUser(String userId) {
-        users.removeIf(user -> user.getId().equals(userId));
-        csvHandler.saveUsers(users);
+        User deleted = write("deleteUser", () -> {
+            User indexed = users.get(userId);
+            if (unindexUser(userId)) {
+                store.users().delete(userId);
+            }
+            return indexed;
+        });
+        if (deleted != null) {
+            loginCache.forget(CredentialIndex.key(deleted.getEmail()));
+        }
+        closeSessionsOf(userId);
     }
 
     public List<User> getAllUsers() {
-        return new ArrayList<>(users);
+        return read("getAllUsers", () -> new ArrayList<>(users.values()));
     }
 
+    // A copy, free to edit
     public User getUserById(String userId) {
-        return users.stream()
-                .filter(user -> user.getId().equals(userId))
-                .findFirst()
-                .orElse(null);
+        return lookup("getUserById", () -> {
+            User user = users.committed(userId);
+            return user != null ? new User(user) : null;
+        });
     }
 
-    private int findUserIndex(String userId) {
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getId().equals(userId)) {
-                return i;
-            }
-        }
-        return -1;
+    public List<User> searchUsers(String query) {
+        final String searchQuery = query.toLowerCase();
+        return read("searchUsers", () -> users.values().stream()
+                .filter(user -> user.getName().toLowerCase().contains(searchQuery) ||
+                        user.getEmail().toLowerCase().contains(searchQuery))
+                .toList());
     }
     // Add this method to your LibraryController class
     private void createInitialAdminUser() {
-        if (users.isEmpty()) {
-            User adminUser = new User(
-                    UUID.randomUUID().toString(),
-                    "Admin",
-                    "admin@library.com",
-                    "admin123",
-                    UserRole.ADMIN
-            );
-            users.add(adminUser);
-            csvHandler.saveUsers(users);
-        }
+        write("createInitialAdminUser", () -> {
+            if (users.size() == 0) {
+                User adminUser = new User(
+                        UUID.randomUUID().toString(),
+                        "Admin",
+                        "admin@library.com",
+                        "admin123",
+                        UserRole.ADMIN
+                );
+                indexUser(adminUser);
+                store.users().save(adminUser);
+            }
+        });
     }
 
     public double returnBook(String loanId) {
-        Loan loan = loans.stream()
-                .filter(l -> l.getId().equals(loanId))
-                .findFirst()
-                .orElse(null);
-
-        if (loan != null && loan.getReturnDate() == null) {
-            loan.setReturnDate(LocalDate.now());
-            Book book = books.stream()
-                    .filter(b -> b.getId().equals(loan.getBookId()))
-                    .findFirst()
-                    .orElse(null);
-
-            if (book != null) {
-                book.setAvailable(true);
-                double penalty = calculatePenalty(loan);
-                loan.setPenalty(penalty);
-                csvHandler.saveLoans(loans);
-                csvHandler.saveBooks(books);
-                return penalty;
+        return write("returnBook", () -> {
+            Loan loan = loans.get(loanId);
+
+            if (loan == null || loan.isReturned()) {
+                return 0.0;
             }
-        }
-        return 0.0;
+            Loan returned = new Loan(loan);
+            returned.setReturnDate(LocalDate.now());
+            double penalty = calculatePenalty(returned);
+            returned.setPenalty(penalty);
+            indexLoan(returned);
+            store.loans().save(returned); // Even if the book has been deleted since
+            shelve(returned.getBookId());
+            return penalty;
+        });
     }
 
 
     // Statistics methods
+    public LibraryStatistics getStatistics() {
+        return statistics;
+    }
+
     public int getTotalBooks() {
-        return books.size();
+        return statistics.getTotalBooks();
     }
 
     public int getAvailableBooksCount() {
-
-        return (int) books.stream().filter(Book::isAvailable).count();
+        return statistics.getAvailableBooks();
     }
     public List<Book> getMostPopularBooks(int limit) {
-        Map<String, Long> bookLoanCounts = new HashMap<>();
-        for (Loan loan : loans) {
-            bookLoanCounts.merge(loan.getBookId(), 1L, Long::sum);
+        return read("getMostPopularBooks", () -> popularity.top(limit, books::contains).stream()
+                .map(books::get)
+                .toList());
+    }
+
+    // Same ranking restricted to loans made in the last `days` days
+    public List<Book> getMostPopularBooks(int limit, int days) {
+        return read("getMostPopularBooks", () -> popularity.top(limit, days, books::contains).stream()
+                .map(books::get)
+                .toList());
+    }
+    //***********************************************************************************
+    // Bulk import from CSV exports in the snapshot file formats. The file is
+    // streamed in batches; each batch is validated, de-duplicated against
+    // existing records and earlier rows, and applied under one lock
+    // acquisition as one journal transaction. Journal compaction is held back
+    // until the import ends, so the snapshot files are rewritten once rather
+    // than every few thousand rows. progress runs on the importing thread
+    // after each batch.
+    private static final int IMPORT_BATCH_SIZE = 5_000;
+
+    private enum ImportOutcome { IMPORTED, DUPLICATE, INVALID }
+
+    public ImportResult importBooks(Path file, Consumer<ImportResult> progress) throws IOException {
+        try (CsvBatchReader<Book> reader = CsvBatchReader.books(file)) {
+            return importBatches(reader, this::importBook, progress);
+        }
+    }
+
+    // The password column holds the stored form, as in users.csv: a hash is
+    // kept as it is, plain text is hashed by the migration started at the end
+    public ImportResult importUsers(Path file, Consumer<ImportResult> progress) throws IOException {
+        try (CsvBatchReader<User> reader = CsvBatchReader.users(file)) {
+            Set<String> emails = read("importUsers", () -> users.values().stream()
+                    .map(user -> user.getEmail().toLowerCase())
+                    .collect(Collectors.toCollection(HashSet::new)));
+            return importBatches(reader, user -> importUser(user, emails), progress);
+        } finally {
+            migratePasswords();
+        }
+    }
+
+    public ImportResult importLoans(Path file, Consumer<ImportResult> progress) throws IOException {
+        try (CsvBatchReader<Loan> reader = CsvBatchReader.loans(file)) {
+            return importBatches(reader, this::importLoan, progress);
+        }
+    }
+
+    private <T> ImportResult importBatches(CsvBatchReader<T> reader, Function<T, ImportOutcome> importer,
+                                           Consumer<ImportResult> progress) throws IOException {
+        long start = System.nanoTime();
+        long[] counts = new long[ImportOutcome.values().length];
+        bulkImports.incrementAndGet();
+        try {
+            List<T> batch;
+            while (!(batch = reader.nextBatch(IMPORT_BATCH_SIZE)).isEmpty()) {
+                List<T> rows = batch;
+                write("importBatch", () -> rows.forEach(row -> counts[importer.apply(row).ordinal()]++));
+                progress.accept(importResult(counts, reader, start));
+            }
+        } finally {
+            bulkImports.decrementAndGet();
+            persister.submit(); // Runs the held-back compaction
+        }
+        return importResult(counts, reader, start);
+    }
+
+    private static ImportResult importResult(long[] counts, CsvBatchReader<?> reader, long start) {
+        return new ImportResult(counts[ImportOutcome.IMPORTED.ordinal()],
+                counts[ImportOutcome.DUPLICATE.ordinal()],
+                counts[ImportOutcome.INVALID.ordinal()] + reader.getMalformed(),
+                reader.getBytesRead(), reader.getTotalBytes(), System.nanoTime() - start);
+    }
+
+    private ImportOutcome importBook(Book book) {
+        if (book.getId().isBlank() || book.getTitle().isBlank()) {
+            return ImportOutcome.INVALID;
         }
+        if (books.contains(book.getId())) {
+            return ImportOutcome.DUPLICATE;
+        }
+        indexBook(book);
+        store.books().save(book);
+        return ImportOutcome.IMPORTED;
+    }
 
-        return bookLoanCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> books.stream()
-                        .filter(book -> book.getId().equals(entry.getKey()))
-                        .findFirst()
-                        .orElse(null))
-                .filter(Objects::nonNull)
-                .toList();
+    private ImportOutcome importUser(User user, Set<String> emails) {
+        if (user.getId().isBlank() || user.getEmail().isBlank()) {
+            return ImportOutcome.INVALID;
+        }
+        if (users.contains(user.getId()) || !emails.add(user.getEmail().toLowerCase())) {
+            return ImportOutcome.DUPLICATE;
+        }
+        markStoredPassword(user);
+        indexUser(user);
+        store.users().save(user);
+        return ImportOutcome.IMPORTED;
     }
+
+    // A loan must reference a known user and book, and an active one needs
+    // the copy to be on the shelf; importing it checks the copy out
+    private ImportOutcome importLoan(Loan loan) {
+        if (loans.contains(loan.getId())) {
+            return ImportOutcome.DUPLICATE;
+        }
+        Book book = books.get(loan.getBookId());
+        if (book == null || !users.contains(loan.getUserId()) || loan.getDueDay() < loan.getLoanDay()) {
+            return ImportOutcome.INVALID;
+        }
+        if (!loan.isReturned()) {
+            if (!book.isAvailable()) {
+                return ImportOutcome.INVALID;
+            }
+            lend(book);
+        }
+        indexLoan(loan);
+        store.loans().save(loan);
+        return ImportOutcome.IMPORTED;
+    }
+
     //***********************************************************************************
 //Loan management methods
+    // The availability check and the checkout are one unit under the write
+    // lock, so two desks can never lend the same copy
     public Loan createLoan(String userId, String bookId) {
-        Book book = books.stream()
-                .filter(b -> b.getId().equals(bookId))
-                .findFirst()
-                .orElse(null);
+        return write("createLoan", () -> {
+            Book book = books.get(bookId);
 
-        if (book != null && book.isAvailable()) {
-            Loan loan = new Loan(UUID.randomUUID().toString(), userId, bookId,
-                    LocalDate.now(), LocalDate.now().plusDays(14));
-            book.setAvailable(false);
-            loans.add(loan);
-            csvHandler.saveLoans(loans);
-            csvHandler.saveBooks(books);
-            return loan;
+            if (book != null && book.isAvailable()) {
+                Loan loan = new Loan(UUID.randomUUID().toString(), userId, bookId,
+                        LocalDate.now(), LocalDate.now().plusDays(14));
+                indexLoan(loan);
+                store.loans().save(loan);
+                lend(book);
+                return loan;
+            }
+            return null;
+        });
+    }
+
+    // Takes the copy off the shelf or puts it back, as part of the caller's unit
+    private void lend(Book book) {
+        Book lent = new Book(book);
+        lent.setAvailable(false);
+        indexBook(lent);
+        store.books().save(lent);
+    }
+
+    private void shelve(String bookId) {
+        Book book = books.get(bookId);
+        if (book != null) {
+            Book shelved = new Book(book);
+            shelved.setAvailable(true);
+            indexBook(shelved);
+            store.books().save(shelved);
         }
-        return null;
+    }
+
+    // Checks out a stack of books for one patron as one unit: every book is
+    // validated first, then all loans are created together, or nothing changes
+    public List<Loan> createLoans(String userId, List<String> bookIds) {
+        return write("createLoans", () -> {
+            if (!users.contains(userId)) {
+                throw new IllegalArgumentException("Unknown user " + userId);
+            }
+            Set<String> seen = new HashSet<>();
+            List<String> unavailable = new ArrayList<>();
+            for (String bookId : bookIds) {
+                Book book = books.get(bookId);
+                if (book == null || !book.isAvailable() || !seen.add(bookId)) {
+                    unavailable.add(bookId);
+                }
+            }
+            if (!unavailable.isEmpty()) {
+                throw new IllegalStateException("Not available: " + String.join(", ", unavailable));
+            }
+
+            LocalDate today = LocalDate.now();
+            List<Loan> created = new ArrayList<>(bookIds.size());
+            for (String bookId : bookIds) {
+                Loan loan = new Loan(UUID.randomUUID().toString(), userId, bookId, today, today.plusDays(14));
+                indexLoan(loan);
+                store.loans().save(loan);
+                lend(books.get(bookId));
+                created.add(loan);
+            }
+            return created;
+        });
+    }
+
+    // Returns several loans as one unit with a single return date and
+    // returns the total penalty; nothing changes if any loan is unknown
+    // or already returned
+    public double returnBooks(List<String> loanIds) {
+        return write("returnBooks", () -> {
+            Set<String> seen = new HashSet<>();
+            List<String> notOnLoan = new ArrayList<>();
+            for (String loanId : loanIds) {
+                Loan loan = loans.get(loanId);
+                if (loan == null || loan.isReturned() || !seen.add(loanId)) {
+                    notOnLoan.add(loanId);
+                }
+            }
+            if (!notOnLoan.isEmpty()) {
+                throw new IllegalStateException("Not on loan: " + String.join(", ", notOnLoan));
+            }
+
+            LocalDate today = LocalDate.now();
+            double totalPenalty = 0.0;
+            for (String loanId : loanIds) {
+                Loan returned = new Loan(loans.get(loanId));
+                returned.setReturnDate(today);
+                double penalty = calculatePenalty(returned);
+                returned.setPenalty(penalty);
+                totalPenalty += penalty;
+                indexLoan(returned);
+                store.loans().save(returned);
+                shelve(returned.getBookId());
+            }
+            return totalPenalty;
+        });
     }
 
     public int getActiveLoansCount() {
-        return (int) loans.stream().filter(loan -> loan.getReturnDate() == null).count();
+        return statistics.getActiveLoans();
     }
 
     public int getOverdueLoansCount() {
-        LocalDate today = LocalDate.now();
-        return (int) loans.stream()
-                .filter(loan -> loan.getReturnDate() == null &&
-                        loan.getDueDate().isBefore(today))
-                .count();
+        return statistics.getOverdueLoans();
     }
     public boolean extendLoan(String loanId, int days) {
-        Loan loan = loans.stream()
-                .filter(l -> l.getId().equals(loanId))
-                .findFirst()
-                .orElse(null);
-
-        if (loan != null && loan.getReturnDate() == null) {
-            loan.setDueDate(loan.getDueDate().plusDays(days));
-            csvHandler.saveLoans(loans);
-            return true;
-        }
-        return false;
+        return write("extendLoan", () -> {
+            Loan loan = loans.get(loanId);
+
+            if (loan != null && !loan.isReturned()) {
+                Loan extended = new Loan(loan);
+                extended.setDueDay(loan.getDueDay() + days);
+                indexLoan(extended);
+                store.loans().save(extended);
+                return true;
+            }
+            return false;
+        });
     }
 
     public List<Loan> getAllLoans() {
-        return new ArrayList<>(loans);
+        return read("getAllLoans", () -> new ArrayList<>(loans.values()));
+    }
+
+    public List<Loan> searchLoans(String query) {
+        final String searchQuery = query.toLowerCase();
+        return read("searchLoans", () -> loans.values().stream()
+                .filter(loan -> loan.getUserId().toLowerCase().contains(searchQuery) ||
+                        loan.getBookId().toLowerCase().contains(searchQuery))
+                .toList());
     }
 
     public List<Loan> getActiveLoans() {
-        return loans.stream()
-                .filter(loan -> loan.getReturnDate() == null)
-                .toList();
+        return read("getActiveLoans", loanIndex::active);
     }
 
     public List<Loan> getUserLoans(String userId) {
-        return loans.stream()
-                .filter(loan -> loan.getUserId().equals(userId))
-                .toList();
+        return lookup("getUserLoans", () -> loanIndex.byUser(userId));
+    }
+
+    public List<Loan> getBookLoans(String bookId) {
+        return lookup("getBookLoans", () -> loanIndex.byBook(bookId));
     }
 
     public List<Loan> getOverdueLoans() {
-        LocalDate today = LocalDate.now();
-        return loans.stream()
-                .filter(loan -> loan.getReturnDate() == null &&
-                        loan.getDueDate().isBefore(today))
-                .toList();
+        return read("getOverdueLoans", () -> loanIndex.overdue(LocalDate.now()));
     }
 
     private double calculatePenalty(Loan loan) {
-        if (loan.getReturnDate().isAfter(loan.getDueDate())) {
-            long daysLate = loan.getReturnDate().toEpochDay() - loan.getDueDate().toEpochDay();
+        if (loan.getReturnDay() > loan.getDueDay()) {
+            long daysLate = loan.getReturnDay() - loan.getDueDay();
             return daysLate * 1.0; // $1 per day late
         }
         return 0.0;
     }
 
     public void deleteLoan(String loanId) {
-        loans.removeIf(loan -> loan.getId().equals(loanId));
-        csvHandler.saveLoans(loans);
+        write("deleteLoan", () -> {
+            if (unindexLoan(loanId)) {
+                store.loans().delete(loanId);
+            }
+        });
     }
 
-    public void updateLoan(Loan loan) {
-        int index = findBookIndex(loan.getId());
-        if (index != -1) {
-            loans.set(index, loan);
-            csvHandler.saveLoans(loans);
-        }
+    // Applies edits to a copy of the loan as it is now, inside the unit of
+    // work. Returns false if the loan is gone.
+    public boolean updateLoan(String loanId, Consumer<Loan> edits) {
+        return write("updateLoan", () -> {
+            Loan indexed = loans.get(loanId);
+            if (indexed == null) {
+                return false;
+            }
+            Loan edited = new Loan(indexed);
+            edits.accept(edited);
+            requireSameId(loanId, edited.getId());
+            indexLoan(edited);
+            store.loans().save(edited);
+            return true;
+        });
     }
 
+    // A copy, free to edit
     public Loan getLoanById(String loanId) {
-        return loans.stream()
-                .filter(loan -> loan.getId().equals(loanId))
-                .findFirst()
-                .orElse(null);
+        return lookup("getLoanById", () -> {
+            Loan loan = loans.committed(loanId);
+            return loan != null ? new Loan(loan) : null;
+        });
     }
 
+    // Indexes a copy, so the caller's object stays its own
     public void addLoan(Loan newLoan) {
-        loans.add(newLoan);
-        csvHandler.saveLoans(loans);
+        Loan added = new Loan(newLoan);
+        write("addLoan", () -> {
+            indexLoan(added);
+            store.loans().save(added);
+        });
     }
 }
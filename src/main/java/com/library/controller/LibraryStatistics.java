@@ -0,0 +1,168 @@
+package com.library.controller;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Dashboard counters maintained incrementally as the controller mutates data,
+// so every read is O(1). Overdue loans are counted against the current day;
+// when the day rolls over the count is re-derived from the per-due-date
+// histogram of active loans instead of from the loan history.
+// Safe to read from any thread; listeners run outside the monitor.
+public class LibraryStatistics {
+    private record BookState(String genre, boolean available) {
+        static BookState of(Book book) {
+            return new BookState(book.getGenre(), book.isAvailable());
+        }
+    }
+
+    private record LoanState(boolean active, int dueDay, double penalty) {
+        static LoanState of(Loan loan) {
+            return new LoanState(!loan.isReturned(), loan.getDueDay(), loan.getPenalty());
+        }
+    }
+
+    private final Map<String, BookState> bookStates = new HashMap<>();
+    private final Map<String, LoanState> loanStates = new HashMap<>();
+    private final Map<String, Integer> genreCounts = new TreeMap<>();
+    private final TreeMap<Integer, Integer> activeByDueDay = new TreeMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private int availableBooks;
+    private int activeLoans;
+    private int overdueLoans;
+    private double penalties;
+    private int overdueAsOf = today();
+
+    LibraryStatistics(Collection<Book> books, Collection<Loan> loans) {
+        books.forEach(book -> applyBook(book.getId(), BookState.of(book)));
+        loans.forEach(loan -> applyLoan(loan.getId(), LoanState.of(loan)));
+    }
+
+    void putBook(Book book) {
+        synchronized (this) {
+            applyBook(book.getId(), BookState.of(book));
+        }
+        fireChanged();
+    }
+
+    void removeBook(String bookId) {
+        synchronized (this) {
+            applyBook(bookId, null);
+        }
+        fireChanged();
+    }
+
+    void putLoan(Loan loan) {
+        synchronized (this) {
+            applyLoan(loan.getId(), LoanState.of(loan));
+        }
+        fireChanged();
+    }
+
+    void removeLoan(String loanId) {
+        synchronized (this) {
+            applyLoan(loanId, null);
+        }
+        fireChanged();
+    }
+
+    private void applyBook(String bookId, BookState state) {
+        BookState old = state != null ? bookStates.put(bookId, state) : bookStates.remove(bookId);
+        if (old != null) {
+            genreCounts.computeIfPresent(old.genre(), (genre, count) -> count > 1 ? count - 1 : null);
+            if (old.available()) {
+                availableBooks--;
+            }
+        }
+        if (state != null) {
+            genreCounts.merge(state.genre(), 1, Integer::sum);
+            if (state.available()) {
+                availableBooks++;
+            }
+        }
+    }
+
+    private void applyLoan(String loanId, LoanState state) {
+        LoanState old = state != null ? loanStates.put(loanId, state) : loanStates.remove(loanId);
+        if (old != null) {
+            penalties -= old.penalty();
+            if (old.active()) {
+                activeLoans--;
+                activeByDueDay.computeIfPresent(old.dueDay(), (day, count) -> count > 1 ? count - 1 : null);
+                if (old.dueDay() < overdueAsOf) {
+                    overdueLoans--;
+                }
+            }
+        }
+        if (state != null) {
+            penalties += state.penalty();
+            if (state.active()) {
+                activeLoans++;
+                activeByDueDay.merge(state.dueDay(), 1, Integer::sum);
+                if (state.dueDay() < overdueAsOf) {
+                    overdueLoans++;
+                }
+            }
+        }
+    }
+
+    // Daily rollover: loans falling due since the last read become overdue
+    private void rollover(int today) {
+        if (today != overdueAsOf) {
+            overdueAsOf = today;
+            overdueLoans = 0;
+            for (int count : activeByDueDay.headMap(today, false).values()) {
+                overdueLoans += count;
+            }
+        }
+    }
+
+    public synchronized int getTotalBooks() {
+        return bookStates.size();
+    }
+
+    public synchronized int getAvailableBooks() {
+        return availableBooks;
+    }
+
+    public synchronized int getTotalLoans() {
+        return loanStates.size();
+    }
+
+    public synchronized int getActiveLoans() {
+        return activeLoans;
+    }
+
+    public synchronized int getOverdueLoans() {
+        rollover(today());
+        return overdueLoans;
+    }
+
+    private static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    public synchronized double getOutstandingPenalties() {
+        return penalties;
+    }
+
+    public synchronized Map<String, Integer> getGenreCounts() {
+        return new TreeMap<>(genreCounts);
+    }
+
+    // Notified after every change, on the thread that made it
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        listeners.forEach(Runnable::run);
+    }
+}
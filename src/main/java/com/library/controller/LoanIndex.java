@@ -0,0 +1,169 @@
+package com.library.controller;
+
+import com.library.model.Loan;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Secondary indexes over loans: by user, by book, the set of active loans,
+// and the active loans ordered by due date so overdue queries only read
+// the overdue prefix. Indexed loans are never changed in place (the
+// controller indexes a new copy instead), so the loan filed under an id
+// still holds the keys it was filed under when it is replaced or removed.
+// A user's or a book's loans are an immutable list, replaced whenever one
+// of them changes. The writer files new lists aside; publish(), called by
+// the controller once a unit of work is committed or rolled back, hands
+// them to byUser() and byBook(), which need no lock.
+class LoanIndex {
+    private final Map<String, Loan> indexed = new HashMap<>();
+    private final Map<String, List<Loan>> byUser = new ConcurrentHashMap<>();
+    private final Map<String, List<Loan>> byBook = new ConcurrentHashMap<>();
+    private final Map<String, List<Loan>> unpublishedByUser = new HashMap<>();
+    private final Map<String, List<Loan>> unpublishedByBook = new HashMap<>();
+    private final Map<String, Loan> active = new LinkedHashMap<>();
+    private final TreeMap<Integer, Map<String, Loan>> activeByDueDay = new TreeMap<>();
+
+    LoanIndex(Collection<Loan> loans) {
+        Map<String, List<Loan>> userLoans = new HashMap<>();
+        Map<String, List<Loan>> bookLoans = new HashMap<>();
+        for (Loan loan : loans) {
+            Loan old = indexed.put(loan.getId(), loan);
+            if (old != null) { // The later row wins, as in put()
+                userLoans.get(old.getUserId()).remove(old);
+                bookLoans.get(old.getBookId()).remove(old);
+                unfileActive(old);
+            }
+            userLoans.computeIfAbsent(loan.getUserId(), k -> new ArrayList<>()).add(loan);
+            bookLoans.computeIfAbsent(loan.getBookId(), k -> new ArrayList<>()).add(loan);
+            fileActive(loan);
+        }
+        userLoans.forEach((userId, bucket) -> {
+            if (!bucket.isEmpty()) {
+                byUser.put(userId, List.copyOf(bucket));
+            }
+        });
+        bookLoans.forEach((bookId, bucket) -> {
+            if (!bucket.isEmpty()) {
+                byBook.put(bookId, List.copyOf(bucket));
+            }
+        });
+    }
+
+    // Adds the loan, or moves it to its new keys if it was already indexed.
+    // A loan that keeps its user or book keeps its place in their lists.
+    void put(Loan loan) {
+        Loan old = indexed.put(loan.getId(), loan);
+        if (old != null) {
+            unfileActive(old);
+        }
+        boolean sameUser = old != null && old.getUserId().equals(loan.getUserId());
+        boolean sameBook = old != null && old.getBookId().equals(loan.getBookId());
+        if (old != null && !sameUser) {
+            change(byUser, unpublishedByUser, old.getUserId(), old, null);
+        }
+        if (old != null && !sameBook) {
+            change(byBook, unpublishedByBook, old.getBookId(), old, null);
+        }
+        change(byUser, unpublishedByUser, loan.getUserId(), sameUser ? old : null, loan);
+        change(byBook, unpublishedByBook, loan.getBookId(), sameBook ? old : null, loan);
+        fileActive(loan);
+    }
+
+    void remove(String loanId) {
+        Loan old = indexed.remove(loanId);
+        if (old == null) {
+            return;
+        }
+        change(byUser, unpublishedByUser, old.getUserId(), old, null);
+        change(byBook, unpublishedByBook, old.getBookId(), old, null);
+        unfileActive(old);
+    }
+
+    private void fileActive(Loan loan) {
+        if (!loan.isReturned()) {
+            active.put(loan.getId(), loan);
+            activeByDueDay.computeIfAbsent(loan.getDueDay(), k -> new LinkedHashMap<>()).put(loan.getId(), loan);
+        }
+    }
+
+    private void unfileActive(Loan loan) {
+        if (!loan.isReturned()) {
+            active.remove(loan.getId());
+            Map<String, Loan> bucket = activeByDueDay.get(loan.getDueDay());
+            if (bucket != null) {
+                bucket.remove(loan.getId());
+                if (bucket.isEmpty()) {
+                    activeByDueDay.remove(loan.getDueDay());
+                }
+            }
+        }
+    }
+
+    // Files a new list for key with `filed` replaced by `loan`, or left out
+    // when loan is null; with loan appended when filed is null. The filed
+    // loan is the object indexed under its id, so it is found by identity.
+    // An empty list stands for no entry.
+    private static void change(Map<String, List<Loan>> published, Map<String, List<Loan>> unpublished,
+                               String key, Loan filed, Loan loan) {
+        List<Loan> bucket = unpublished.containsKey(key)
+                ? unpublished.get(key) : published.getOrDefault(key, List.of());
+        Loan[] changed;
+        if (filed == null) {
+            changed = bucket.toArray(new Loan[bucket.size() + 1]);
+            changed[bucket.size()] = loan;
+        } else {
+            Loan[] loans = bucket.toArray(new Loan[0]);
+            int at = 0;
+            while (loans[at] != filed) {
+                at++;
+            }
+            if (loan != null) {
+                loans[at] = loan;
+                changed = loans;
+            } else {
+                changed = new Loan[loans.length - 1];
+                System.arraycopy(loans, 0, changed, 0, at);
+                System.arraycopy(loans, at + 1, changed, at, changed.length - at);
+            }
+        }
+        unpublished.put(key, Collections.unmodifiableList(Arrays.asList(changed)));
+    }
+
+    // Makes the writer's changes since the last call visible to byUser() and byBook()
+    void publish() {
+        publish(unpublishedByUser, byUser);
+        publish(unpublishedByBook, byBook);
+    }
+
+    private static void publish(Map<String, List<Loan>> unpublished, Map<String, List<Loan>> published) {
+        unpublished.forEach((key, bucket) -> {
+            if (bucket.isEmpty()) {
+                published.remove(key);
+            } else {
+                published.put(key, bucket);
+            }
+        });
+        unpublished.clear();
+    }
+
+    // As of the last publish(); safe without the lock
+    List<Loan> byUser(String userId) {
+        return byUser.getOrDefault(userId, List.of());
+    }
+
+    List<Loan> byBook(String bookId) {
+        return byBook.getOrDefault(bookId, List.of());
+    }
+
+    List<Loan> active() {
+        return List.copyOf(active.values());
+    }
+
+    // Active loans due strictly before the given day, earliest first
+    List<Loan> overdue(LocalDate today) {
+        List<Loan> overdue = new ArrayList<>();
+        activeByDueDay.headMap((int) today.toEpochDay(), false).values().forEach(bucket -> overdue.addAll(bucket.values()));
+        return overdue;
+    }
+}
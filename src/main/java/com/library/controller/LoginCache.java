@@ -0,0 +1,75 @@
+package com.library.controller;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Recently verified logins, so a desk that re-authenticates all day pays the
+// password hash once per shift instead of on every login. An entry holds an
+// HMAC of the email and password under a key that only lives in this process
+// (never the password itself) together with the stored hash it was checked
+// against: changing or re-hashing the password invalidates it. Entries expire
+// after -Dlibrary.login.cache.minutes (default 480) and the least recently
+// used are dropped beyond 10,000 desks/users.
+class LoginCache {
+    private static final int CAPACITY = 10_000;
+    private static final long TTL_NANOS = TimeUnit.MINUTES.toNanos(
+            Long.getLong("library.login.cache.minutes", 480));
+
+    private record Entry(byte[] token, String storedHash, long expiresAt) {
+    }
+
+    private final SecretKeySpec key;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    LoginCache() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        key = new SecretKeySpec(secret, "HmacSHA256");
+    }
+
+    boolean matches(String email, String password, String storedHash) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(email);
+        }
+        return entry != null
+                && System.nanoTime() - entry.expiresAt() < 0
+                && entry.storedHash().equals(storedHash)
+                && MessageDigest.isEqual(entry.token(), token(email, password));
+    }
+
+    void remember(String email, String password, String storedHash) {
+        Entry entry = new Entry(token(email, password), storedHash, System.nanoTime() + TTL_NANOS);
+        synchronized (this) {
+            entries.put(email, entry);
+        }
+    }
+
+    synchronized void forget(String email) {
+        entries.remove(email);
+    }
+
+    private byte[] token(String email, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            mac.update(email.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
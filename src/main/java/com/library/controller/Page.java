@@ -0,0 +1,8 @@
+package com.library.controller;
+
+import java.util.List;
+
+// One page of a longer result: the items from offset on, and how many
+// matched in all
+public record Page<T>(List<T> items, int offset, int total) {
+}
@@ -0,0 +1,116 @@
+package com.library.controller;
+
+import com.library.model.Loan;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+// Loan counts per book, kept in a sorted ranking so the all-time top K is
+// read in O(K). Loans from the last year are also counted in daily buckets;
+// a windowed ranking merges the buckets in range through a bounded heap.
+class PopularityTracker {
+    private static final int BUCKET_RETENTION_DAYS = 366;
+
+    private record Keys(String bookId, int loanDay) {
+    }
+
+    private record Ranked(String bookId, long count) {
+    }
+
+    private static final Comparator<Ranked> RANKING = Comparator.comparingLong(Ranked::count).reversed()
+            .thenComparing(Ranked::bookId);
+
+    private final Map<String, Keys> countedLoans = new HashMap<>();
+    private final Map<String, Long> counts = new HashMap<>();
+    private final TreeSet<Ranked> ranking = new TreeSet<>(RANKING);
+    private final TreeMap<Integer, Map<String, Integer>> dailyCounts = new TreeMap<>();
+
+    PopularityTracker(Collection<Loan> loans) {
+        loans.forEach(this::put);
+    }
+
+    void put(Loan loan) {
+        Keys keys = new Keys(loan.getBookId(), loan.getLoanDay());
+        Keys old = countedLoans.put(loan.getId(), keys);
+        if (keys.equals(old)) {
+            return;
+        }
+        if (old != null) {
+            count(old, -1);
+        }
+        count(keys, 1);
+    }
+
+    void remove(String loanId) {
+        Keys old = countedLoans.remove(loanId);
+        if (old != null) {
+            count(old, -1);
+        }
+    }
+
+    private void count(Keys keys, int delta) {
+        long before = counts.getOrDefault(keys.bookId(), 0L);
+        long after = before + delta;
+        if (before > 0) {
+            ranking.remove(new Ranked(keys.bookId(), before));
+        }
+        if (after > 0) {
+            counts.put(keys.bookId(), after);
+            ranking.add(new Ranked(keys.bookId(), after));
+        } else {
+            counts.remove(keys.bookId());
+        }
+
+        int oldest = today() - BUCKET_RETENTION_DAYS;
+        if (keys.loanDay() >= oldest) {
+            dailyCounts.computeIfAbsent(keys.loanDay(), day -> new HashMap<>())
+                    .merge(keys.bookId(), delta, (a, b) -> a + b == 0 ? null : a + b);
+            if (dailyCounts.get(keys.loanDay()).isEmpty()) {
+                dailyCounts.remove(keys.loanDay());
+            }
+        }
+        dailyCounts.headMap(oldest).clear();
+    }
+
+    private static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    // Most loaned book ids of all time, skipping ids the caller rejects
+    List<String> top(int limit, Predicate<String> include) {
+        List<String> top = new ArrayList<>(limit);
+        for (Ranked ranked : ranking) {
+            if (top.size() == limit) {
+                break;
+            }
+            if (include.test(ranked.bookId())) {
+                top.add(ranked.bookId());
+            }
+        }
+        return top;
+    }
+
+    // Most loaned book ids among loans made in the last `days` days
+    List<String> top(int limit, int days, Predicate<String> include) {
+        Map<String, Integer> windowCounts = new HashMap<>();
+        dailyCounts.tailMap(today() - days, false).values()
+                .forEach(bucket -> bucket.forEach((bookId, count) -> windowCounts.merge(bookId, count, Integer::sum)));
+
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(RANKING.reversed());
+        windowCounts.forEach((bookId, count) -> {
+            if (include.test(bookId)) {
+                heap.add(new Ranked(bookId, count));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        });
+        List<String> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            top.add(heap.poll().bookId());
+        }
+        Collections.reverse(top);
+        return top;
+    }
+}
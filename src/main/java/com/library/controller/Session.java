@@ -0,0 +1,58 @@
+package com.library.controller;
+
+import com.library.model.User;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+// One signed-in user, at a desk or an API client. Opening a session only
+// verifies the password: the library data is loaded once per process by the
+// shared LibraryController, however many people log in and out. The id is
+// an unguessable token that identifies the session to the controller, which
+// expires it once idle or old enough (see LibraryController.getSession).
+public final class Session {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String id;
+    private final User user;
+    private final Instant startedAt = Instant.now();
+    private final long startedNanos = System.nanoTime();
+    private volatile long lastUsedNanos = startedNanos;
+    private volatile boolean open = true;
+
+    Session(User user) {
+        byte[] token = new byte[24];
+        RANDOM.nextBytes(token);
+        this.id = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+        this.user = user;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    boolean isExpired(long now, long idleNanos, long maxAgeNanos) {
+        return now - lastUsedNanos > idleNanos || now - startedNanos > maxAgeNanos;
+    }
+
+    void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,166 @@
+package com.library.controller;
+
+import com.library.dao.LibraryStore;
+import com.library.dao.StoreException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Write-behind for the store. A mutation ends its unit of work in memory
+// (store.commit()) and returns; this thread makes the queued units durable.
+// Everything queued while a flush is running goes out in the next single
+// flush, so a burst of edits costs one disk sync, and at most one checkpoint
+// (journal compaction) is ever pending. Once MAX_PENDING units are waiting
+// for the disk, submit() blocks the caller until it catches up. A flush that
+// fails leaves its units pending and is retried every RETRY_MILLIS; until
+// one succeeds, getFailure() says why nothing is being saved.
+class WriteBehindPersister implements AutoCloseable {
+    private static final int MAX_PENDING = 10_000;
+    private static final long RETRY_MILLIS = 1_000;
+
+    private final LibraryStore store;
+    private final Runnable checkpoint;
+    private final Thread thread;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private int pending;
+    private boolean closed;
+    private RuntimeException failure;
+
+    WriteBehindPersister(LibraryStore store, Runnable checkpoint) {
+        this.store = store;
+        this.checkpoint = checkpoint;
+        this.thread = new Thread(this::run, "library-persister");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Queues one committed unit of work
+    void submit() {
+        synchronized (this) {
+            boolean interrupted = false;
+            while (pending >= MAX_PENDING && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            pending++;
+            notifyAll();
+        }
+        fireChanged();
+    }
+
+    private void run() {
+        while (true) {
+            int batch;
+            synchronized (this) {
+                while (pending == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the loop, so nothing queued is lost
+                    }
+                }
+                if (pending == 0) {
+                    return;
+                }
+                batch = pending;
+            }
+            try {
+                store.flush();
+            } catch (RuntimeException e) {
+                if (getFailure() == null) {
+                    e.printStackTrace(); // Once per outage, not once per retry
+                }
+                if (!retryLater(e)) {
+                    System.err.println(batch + " unit(s) of work could not be saved");
+                    return;
+                }
+                continue;
+            }
+            try {
+                checkpoint.run(); // Decides for itself whether one is due
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // The journal still holds everything
+            }
+            synchronized (this) {
+                failure = null;
+                pending -= batch;
+                notifyAll();
+            }
+            fireChanged();
+        }
+    }
+
+    // Records the failure and waits before the next attempt. Returns false
+    // once closed: there is no one left to retry for.
+    private boolean retryLater(RuntimeException e) {
+        synchronized (this) {
+            failure = e;
+            notifyAll();
+        }
+        fireChanged();
+        synchronized (this) {
+            if (!closed) {
+                try {
+                    wait(RETRY_MILLIS);
+                } catch (InterruptedException ignored) {
+                    // Only close() stops the loop
+                }
+            }
+            return !closed;
+        }
+    }
+
+    synchronized int getPending() {
+        return pending;
+    }
+
+    // Why the last flush failed, or null once one has succeeded
+    synchronized RuntimeException getFailure() {
+        return failure;
+    }
+
+    // Blocks until every unit submitted so far is durable; throws the flush
+    // failure instead of waiting for the retries
+    synchronized void awaitFlushed() throws InterruptedException {
+        while (pending > 0 && thread.isAlive() && failure == null) {
+            wait();
+        }
+        if (failure != null) {
+            throw new StoreException("Changes are not being saved", failure);
+        }
+    }
+
+    // Notified, on the persister thread or the submitting one, whenever the
+    // number of pending units changes
+    void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        listeners.forEach(Runnable::run);
+    }
+
+    // Drains the queue, then stops the thread
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.library.dao;
+
+import com.library.model.*;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Compact binary copy of the CSV snapshots for fast cold start.
+// Repeated strings (authors, genres, the user and book ids referenced by
+// loans) are dictionary-encoded as int references, dates are epoch-day
+// ints, and the file is read back through a memory-mapped buffer.
+// The header carries a stamp of the CSV files it was written from, so a
+// snapshot older than the CSVs (e.g. after a hand edit) is ignored.
+class BinarySnapshot {
+    private static final long MAGIC = 0x4C49425241525931L; // "LIBRARY1"
+    private static final int VERSION = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private BinarySnapshot() {
+    }
+
+    static void write(Path file, LibraryData data, long[] sourceStamp) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Book book : data.books()) {
+            dictionary.putIfAbsent(book.getAuthor(), dictionary.size());
+            dictionary.putIfAbsent(book.getGenre(), dictionary.size());
+        }
+        for (Loan loan : data.loans()) {
+            dictionary.putIfAbsent(loan.getUserId(), dictionary.size());
+            dictionary.putIfAbsent(loan.getBookId(), dictionary.size());
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sourceStamp.length);
+            for (long value : sourceStamp) {
+                out.writeLong(value);
+            }
+
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                writeString(out, value);
+            }
+
+            out.writeInt(data.books().size());
+            for (Book book : data.books()) {
+                writeString(out, book.getId());
+                writeString(out, book.getTitle());
+                out.writeInt(dictionary.get(book.getAuthor()));
+                out.writeInt(dictionary.get(book.getGenre()));
+                out.writeInt(book.getYear());
+                out.writeBoolean(book.isAvailable());
+            }
+
+            out.writeInt(data.users().size());
+            for (User user : data.users()) {
+                writeString(out, user.getId());
+                writeString(out, user.getName());
+                writeString(out, user.getEmail());
+                writeString(out, user.getPassword());
+                out.writeByte(user.getRole().ordinal());
+            }
+
+            out.writeInt(data.loans().size());
+            for (Loan loan : data.loans()) {
+                writeString(out, loan.getId());
+                out.writeInt(dictionary.get(loan.getUserId()));
+                out.writeInt(dictionary.get(loan.getBookId()));
+                out.writeInt(loan.getLoanDay());
+                out.writeInt(loan.getDueDay());
+                out.writeInt(loan.isReturned() ? loan.getReturnDay() : NO_DATE);
+                out.writeDouble(loan.getPenalty());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns null when there is no usable snapshot for these CSV files
+    static LibraryData read(Path file, long[] sourceStamp) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getLong() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            long[] stamp = new long[in.getInt()];
+            for (int i = 0; i < stamp.length; i++) {
+                stamp[i] = in.getLong();
+            }
+            if (!Arrays.equals(stamp, sourceStamp)) {
+                return null;
+            }
+
+            // Books and users take their ids from the dictionary the loans use
+            StringPool strings = new StringPool();
+            String[] dictionary = new String[in.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = strings.canonical(readString(in));
+            }
+
+            int bookCount = in.getInt();
+            List<Book> books = new ArrayList<>(bookCount);
+            for (int i = 0; i < bookCount; i++) {
+                Book book = new Book(strings.canonical(readString(in)), readString(in),
+                        dictionary[in.getInt()], dictionary[in.getInt()], in.getInt());
+                book.setAvailable(in.get() != 0);
+                books.add(book);
+            }
+
+            UserRole[] roles = UserRole.values();
+            int userCount = in.getInt();
+            List<User> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                users.add(new User(strings.canonical(readString(in)), readString(in), readString(in), readString(in),
+                        roles[in.get()]));
+            }
+
+            int loanCount = in.getInt();
+            List<Loan> loans = new ArrayList<>(loanCount);
+            for (int i = 0; i < loanCount; i++) {
+                Loan loan = new Loan(readString(in), dictionary[in.getInt()], dictionary[in.getInt()],
+                        in.getInt(), in.getInt());
+                int returnDay = in.getInt();
+                if (returnDay != NO_DATE) {
+                    loan.setReturnDay(returnDay);
+                }
+                loan.setPenalty(in.getDouble());
+                loans.add(loan);
+            }
+            return new LibraryData(books, users, loans);
+        } catch (RuntimeException e) {
+            System.err.println("Ignoring unreadable snapshot " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
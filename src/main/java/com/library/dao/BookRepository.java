@@ -0,0 +1,13 @@
+package com.library.dao;
+
+import com.library.model.Book;
+
+import java.util.List;
+
+public interface BookRepository {
+    List<Book> findAll();
+
+    void save(Book book);
+
+    void delete(String bookId);
+}
@@ -1,28 +1,90 @@
 package com.library.dao;
 
+import com.library.metrics.Counter;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
 import com.library.model.*;
 import com.opencsv.*;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
 
 public class CSVHandler {
-    private static final String DATA_DIR = "src/main/java/com/library/database/";
-    private static final String BOOKS_FILE = DATA_DIR + "books.csv";
-    private static final String USERS_FILE = DATA_DIR + "users.csv";
-    private static final String LOANS_FILE = DATA_DIR + "loans.csv";
+    static final String DATA_DIR = "src/main/java/com/library/database/";
+    static final String[] BOOKS_HEADER = {"id", "title", "author", "genre", "year", "available"};
+    static final String[] USERS_HEADER = {"id", "name", "email", "password", "role"};
+    static final String[] LOANS_HEADER = {
+            "id", "userId", "bookId", "loanDate", "dueDate", "returnDate", "penalty"
+    };
+    private static final int COMPACTION_THRESHOLD = 10_000;
+
+    private static final LatencyHistogram LOAD_TIME = ioTimer("load");
+    private static final LatencyHistogram SAVE_BOOKS_TIME = ioTimer("saveBooks");
+    private static final LatencyHistogram SAVE_USERS_TIME = ioTimer("saveUsers");
+    private static final LatencyHistogram SAVE_LOANS_TIME = ioTimer("saveLoans");
+    private static final LatencyHistogram FLUSH_TIME = ioTimer("flush");
+    private static final LatencyHistogram REPLAY_TIME = ioTimer("replay");
+    private static final LatencyHistogram COMPACT_TIME = ioTimer("compact");
+    private static final LatencyHistogram BACKUP_TIME = ioTimer("backup");
+    private static final LatencyHistogram RESTORE_TIME = ioTimer("restore");
+    private static final Counter JOURNAL_RECORDS = MetricsRegistry.getDefault().counter(
+            "library_journal_records_total", "Mutations appended to the journal");
+
+    private final String dataDir;
+    private final String booksFile;
+    private final String usersFile;
+    private final String loansFile;
+    private final String journalFile;
+    private final String snapshotFile;
+    private final String commitMarker;
+    private Journal journal;
+    private final DoubleSupplier journalRecords = () -> journal.getRecordCount();
 
     public CSVHandler() {
+        this(DATA_DIR);
+    }
+
+    // Keeps all files in the given directory instead of the default one
+    // (benchmarks, generated datasets, tests of a copy of the data)
+    public CSVHandler(String dataDir) {
+        this.dataDir = dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        this.booksFile = this.dataDir + "books.csv";
+        this.usersFile = this.dataDir + "users.csv";
+        this.loansFile = this.dataDir + "loans.csv";
+        this.journalFile = this.dataDir + "journal.log";
+        this.snapshotFile = this.dataDir + "snapshot.bin";
+        this.commitMarker = this.dataDir + "snapshot.commit";
         initializeDataDirectory();
+        try {
+            journal = new Journal(journalFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        MetricsRegistry.getDefault().gauge("library_journal_records",
+                "Journal records since the last compaction", journalRecords);
+    }
+
+    private static LatencyHistogram ioTimer(String operation) {
+        return MetricsRegistry.getDefault().histogram("library_store_io_seconds",
+                "Latency of CSV store reads, writes and fsyncs", "operation", operation);
     }
 
     private void initializeDataDirectory() {
-        new File(DATA_DIR).mkdirs();
-        createFileIfNotExists(BOOKS_FILE);
-        createFileIfNotExists(USERS_FILE);
-        createFileIfNotExists(LOANS_FILE);
+        new File(dataDir).mkdirs();
+        recoverInterruptedCommit();
+        createFileIfNotExists(booksFile);
+        createFileIfNotExists(usersFile);
+        createFileIfNotExists(loansFile);
     }
 
     private void createFileIfNotExists(String filename) {
@@ -31,7 +93,7 @@ public class CSVHandler {
             try {
                 file.createNewFile();
                 writeHeaders(file);
-                if (filename.equals(USERS_FILE)) {
+                if (filename.equals(usersFile)) {
                     createDefaultUsers();
                 }
             } catch (IOException e) {
@@ -44,11 +106,11 @@ public class CSVHandler {
         try (CSVWriter writer = new CSVWriter(new FileWriter(file))) {
             String[] headers;
             if (file.getName().equals("books.csv")) {
-                headers = new String[]{"id", "title", "author", "genre", "year", "available"};
+                headers = BOOKS_HEADER;
             } else if (file.getName().equals("users.csv")) {
-                headers = new String[]{"id", "name", "email", "password", "role"};
+                headers = USERS_HEADER;
             } else {
-                headers = new String[]{"id", "userId", "bookId", "loanDate", "dueDate", "returnDate", "penalty"};
+                headers = LOANS_HEADER;
             }
             writer.writeNext(headers);
         } catch (IOException e) {
@@ -56,128 +118,502 @@ public class CSVHandler {
         }
     }
 
-    public List<Book> loadBooks() {
-        List<Book> books = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(BOOKS_FILE))) {
-            String[] line;
-            reader.readNext(); // Skip header
-            while ((line = reader.readNext()) != null) {
-                Book book = new Book(
-                        line[0], // id
-                        line[1], // title
-                        line[2], // author
-                        line[3], // genre
-                        Integer.parseInt(line[4]) // year
-                );
-                book.setAvailable(Boolean.parseBoolean(line[5]));
-                books.add(book);
+    // Loads the binary snapshot when it matches the CSV files, otherwise
+    // imports the CSVs and writes a fresh binary snapshot for next time
+    public LibraryData loadSnapshot() {
+        return readSnapshot(true);
+    }
+
+    // Same, but never writes: a stale binary snapshot is left as it is
+    public LibraryData readSnapshot() {
+        return readSnapshot(false);
+    }
+
+    private LibraryData readSnapshot(boolean refreshBinary) {
+        long start = System.nanoTime();
+        try {
+            try {
+                LibraryData data = BinarySnapshot.read(Paths.get(snapshotFile), csvStamp());
+                if (data != null) {
+                    return data;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (Exception e) {
+            // Loans share the ids of the books and users loaded before them
+            StringPool ids = new StringPool();
+            List<Book> books = loadBooks(ids);
+            List<User> users = loadUsers(ids);
+            books.forEach(book -> ids.canonical(book.getId()));
+            users.forEach(user -> ids.canonical(user.getId()));
+            LibraryData data = new LibraryData(books, users, loadLoans(ids));
+            if (refreshBinary) {
+                writeBinarySnapshot(data);
+            }
+            return data;
+        } finally {
+            LOAD_TIME.recordSince(start);
+        }
+    }
+
+    private void writeBinarySnapshot(LibraryData data) {
+        try {
+            BinarySnapshot.write(Paths.get(snapshotFile), data, csvStamp());
+        } catch (IOException e) {
             e.printStackTrace();
         }
-        return books;
+    }
+
+    // Size and modification time of each CSV file the binary snapshot mirrors
+    private long[] csvStamp() {
+        long[] stamp = new long[6];
+        String[] files = {booksFile, usersFile, loansFile};
+        for (int i = 0; i < files.length; i++) {
+            File file = new File(files[i]);
+            stamp[2 * i] = file.length();
+            stamp[2 * i + 1] = file.lastModified();
+        }
+        return stamp;
+    }
+
+    public List<Book> loadBooks() {
+        return loadBooks(new StringPool());
+    }
+
+    // Each chunk's parser pools strings in a child of `strings`
+    private List<Book> loadBooks(StringPool strings) {
+        try {
+            return ParallelCsvLoader.load(Paths.get(booksFile), () -> {
+                StringPool chunkStrings = strings.child();
+                return line -> parseBook(line, 0, chunkStrings);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
     }
 
     public void saveBooks(List<Book> books) {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(BOOKS_FILE))) {
-            writer.writeNext(new String[]{"id", "title", "author", "genre", "year", "available"});
-            for (Book book : books) {
-                writer.writeNext(new String[]{
-                        book.getId(),
-                        book.getTitle(),
-                        book.getAuthor(),
-                        book.getGenre(),
-                        String.valueOf(book.getYear()),
-                        String.valueOf(book.isAvailable())
-                });
-            }
+        long start = System.nanoTime();
+        try {
+            stage(booksFile, BOOKS_HEADER, books, CSVHandler::bookRow);
+            commitFiles(booksFile);
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            SAVE_BOOKS_TIME.recordSince(start);
         }
     }
 
     public List<User> loadUsers() {
-        List<User> users = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(USERS_FILE))) {
-            String[] line;
-            reader.readNext(); // Skip header
-            while ((line = reader.readNext()) != null) {
-                users.add(new User(
-                        line[0],                    // id
-                        line[1],                    // name
-                        line[2],                    // email
-                        line[3],                    // password
-                        UserRole.valueOf(line[4])   // role
-                ));
-            }
-        } catch (Exception e) {
+        return loadUsers(new StringPool());
+    }
+
+    private List<User> loadUsers(StringPool strings) {
+        try {
+            return ParallelCsvLoader.load(Paths.get(usersFile), () -> {
+                StringPool chunkStrings = strings.child();
+                return line -> parseUser(line, 0, chunkStrings);
+            });
+        } catch (IOException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return users;
     }
 
     public void saveUsers(List<User> users) {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(USERS_FILE))) {
-            writer.writeNext(new String[]{"id", "name", "email", "password", "role"});
-            for (User user : users) {
-                writer.writeNext(new String[]{
-                        user.getId(),
-                        user.getName(),
-                        user.getEmail(),
-                        user.getPassword(),
-                        user.getRole().toString()
-                });
-            }
+        long start = System.nanoTime();
+        try {
+            stage(usersFile, USERS_HEADER, users, CSVHandler::userRow);
+            commitFiles(usersFile);
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            SAVE_USERS_TIME.recordSince(start);
         }
     }
 
     public List<Loan> loadLoans() {
-        List<Loan> loans = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(LOANS_FILE))) {
-            String[] line;
-            reader.readNext(); // Skip header
-            while ((line = reader.readNext()) != null) {
-                Loan loan = new Loan(
-                        line[0],                    // id
-                        line[1],                    // userId
-                        line[2],                    // bookId
-                        LocalDate.parse(line[3]),   // loanDate
-                        LocalDate.parse(line[4])    // dueDate
-                );
-
-                if (line.length > 5 && !line[5].isEmpty()) {
-                    loan.setReturnDate(LocalDate.parse(line[5]));
-                }
-                if (line.length > 6 && !line[6].isEmpty()) {
-                    loan.setPenalty(Double.parseDouble(line[6]));
+        return loadLoans(new StringPool());
+    }
+
+    private List<Loan> loadLoans(StringPool strings) {
+        try {
+            return ParallelCsvLoader.load(Paths.get(loansFile), () -> {
+                StringPool chunkStrings = strings.child();
+                return line -> parseLoan(line, 0, chunkStrings);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public void saveLoans(List<Loan> loans) {
+        long start = System.nanoTime();
+        try {
+            stage(loansFile, LOANS_HEADER, loans, CSVHandler::loanRow);
+            commitFiles(loansFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            SAVE_LOANS_TIME.recordSince(start);
+        }
+    }
+
+    //***********************************************************************************
+    // Crash-safe snapshot writes: each file is written to a ".tmp" sibling and
+    // fsynced, then renamed over the live file. A set of files that must change
+    // together is listed in a commit marker before the first rename, so a crash
+    // part way through is rolled forward on the next start instead of leaving
+    // new books next to old loans.
+    private static <T> void stage(String filename, String[] header, List<T> entities,
+                                  Function<T, String[]> toRow) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(tempFile(filename));
+             CSVWriter writer = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.writeNext(header);
+            for (T entity : entities) {
+                writer.writeNext(toRow.apply(entity));
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    private void commitFiles(String... filenames) throws IOException {
+        Path marker = Paths.get(commitMarker);
+        if (filenames.length > 1) {
+            Files.write(marker, Arrays.asList(filenames), StandardCharsets.UTF_8);
+            sync(marker);
+        }
+        for (String filename : filenames) {
+            Files.move(Paths.get(tempFile(filename)), Paths.get(filename),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        syncDirectory();
+        Files.deleteIfExists(marker);
+    }
+
+    // A marker means its staged files are complete: finish the renames.
+    // Without one, leftover ".tmp" files are from an unfinished write and
+    // the live files are still the last consistent state.
+    private void recoverInterruptedCommit() {
+        Path marker = Paths.get(commitMarker);
+        try {
+            if (Files.exists(marker)) {
+                for (String filename : Files.readAllLines(marker, StandardCharsets.UTF_8)) {
+                    Path staged = Paths.get(tempFile(filename));
+                    if (Files.exists(staged)) {
+                        Files.move(staged, Paths.get(filename),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
                 }
-                loans.add(loan);
+                syncDirectory();
+                Files.delete(marker);
+                System.err.println("Completed an interrupted snapshot commit");
             }
-        } catch (Exception e) {
+            for (String filename : new String[]{booksFile, usersFile, loansFile, journalFile}) {
+                Files.deleteIfExists(Paths.get(tempFile(filename)));
+            }
+        } catch (IOException e) {
             e.printStackTrace();
         }
-        return loans;
     }
 
-    public void saveLoans(List<Loan> loans) {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(LOANS_FILE))) {
-            writer.writeNext(new String[]{
-                    "id", "userId", "bookId", "loanDate", "dueDate", "returnDate", "penalty"
-            });
+    private static String tempFile(String filename) {
+        return filename + ".tmp";
+    }
+
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // Makes the renames themselves durable. Not every platform can open a
+    // directory for syncing (Windows cannot), and there it is skipped.
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(Paths.get(dataDir), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    // Row conversions shared by the snapshot files and the journal. Ids that
+    // other records refer to, authors and genres go through the pool.
+    static Book parseBook(String[] line, int from, StringPool strings) {
+        Book book = new Book(
+                strings.canonical(line[from]),     // id
+                line[from + 1],                    // title
+                strings.canonical(line[from + 2]), // author
+                strings.canonical(line[from + 3]), // genre
+                Integer.parseInt(line[from + 4])   // year
+        );
+        book.setAvailable(Boolean.parseBoolean(line[from + 5]));
+        return book;
+    }
+
+    static String[] bookRow(Book book) {
+        return new String[]{
+                book.getId(),
+                book.getTitle(),
+                book.getAuthor(),
+                book.getGenre(),
+                String.valueOf(book.getYear()),
+                String.valueOf(book.isAvailable())
+        };
+    }
+
+    static User parseUser(String[] line, int from, StringPool strings) {
+        return new User(
+                strings.canonical(line[from]),    // id
+                line[from + 1],                   // name
+                line[from + 2],                   // email
+                line[from + 3],                   // password
+                UserRole.valueOf(line[from + 4])  // role
+        );
+    }
+
+    static String[] userRow(User user) {
+        return new String[]{
+                user.getId(),
+                user.getName(),
+                user.getEmail(),
+                user.getPassword(),
+                user.getRole().toString()
+        };
+    }
+
+    static Loan parseLoan(String[] line, int from, StringPool strings) {
+        Loan loan = new Loan(
+                line[from],                        // id
+                strings.canonical(line[from + 1]), // userId
+                strings.canonical(line[from + 2]), // bookId
+                epochDay(line[from + 3]),          // loanDate
+                epochDay(line[from + 4])           // dueDate
+        );
+
+        if (line.length > from + 5 && !line[from + 5].isEmpty()) {
+            loan.setReturnDay(epochDay(line[from + 5]));
+        }
+        if (line.length > from + 6 && !line[from + 6].isEmpty()) {
+            loan.setPenalty(Double.parseDouble(line[from + 6]));
+        }
+        return loan;
+    }
+
+    // Dates are stored as yyyy-MM-dd; reading the digits directly skips the
+    // DateTimeFormatter machinery, which dominates parsing a large loans file
+    static int epochDay(String date) {
+        if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return (int) LocalDate.of(year, month, day).toEpochDay(); // Validates the day of month
+            }
+        }
+        return (int) LocalDate.parse(date).toEpochDay();
+    }
 
-            for (Loan loan : loans) {
-                writer.writeNext(new String[]{
-                        loan.getId(),
-                        loan.getUserId(),
-                        loan.getBookId(),
-                        loan.getLoanDate().toString(),
-                        loan.getDueDate().toString(),
-                        loan.getReturnDate() != null ? loan.getReturnDate().toString() : "",
-                        loan.getPenalty() > 0 ? String.valueOf(loan.getPenalty()) : "0.0"
-                });
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
             }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    static String[] loanRow(Loan loan) {
+        return new String[]{
+                loan.getId(),
+                loan.getUserId(),
+                loan.getBookId(),
+                loan.getLoanDate().toString(),
+                loan.getDueDate().toString(),
+                loan.getReturnDate() != null ? loan.getReturnDate().toString() : "",
+                loan.getPenalty() > 0 ? String.valueOf(loan.getPenalty()) : "0.0"
+        };
+    }
+
+    //***********************************************************************************
+    // Journal: every mutation is appended as one record ("BOOK", "PUT", fields...)
+    // or ("BOOK", "DELETE", id) instead of rewriting the whole CSV file.
+    public void journalBook(Book book) {
+        journalPut("BOOK", bookRow(book));
+    }
+
+    public void journalBookDeletion(String bookId) {
+        journal.append("BOOK", "DELETE", bookId);
+        JOURNAL_RECORDS.increment();
+    }
+
+    public void journalUser(User user) {
+        journalPut("USER", userRow(user));
+    }
+
+    public void journalUserDeletion(String userId) {
+        journal.append("USER", "DELETE", userId);
+        JOURNAL_RECORDS.increment();
+    }
+
+    public void journalLoan(Loan loan) {
+        journalPut("LOAN", loanRow(loan));
+    }
+
+    public void journalLoanDeletion(String loanId) {
+        journal.append("LOAN", "DELETE", loanId);
+        JOURNAL_RECORDS.increment();
+    }
+
+    private void journalPut(String entity, String[] row) {
+        String[] record = new String[row.length + 2];
+        record[0] = entity;
+        record[1] = "PUT";
+        System.arraycopy(row, 0, record, 2, row.length);
+        journal.append(record);
+        JOURNAL_RECORDS.increment();
+    }
+
+    // Ends the current transaction and makes every journaled mutation durable
+    // (one fsync for the whole batch). Records journaled since the previous
+    // commit are replayed together or not at all. A failed flush throws
+    // StoreException; the records stay buffered for the next attempt.
+    public void commit() {
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            throw new StoreException("Journal flush failed", e);
+        }
+    }
+
+    // The two halves of commit() for callers that serialize their units of
+    // work under a lock: end the transaction inside it, flush outside it so
+    // threads committing at the same time share one fsync
+    public void endTransaction() {
+        journal.endTransaction();
+    }
+
+    public void abortTransaction() {
+        journal.abortTransaction();
+    }
+
+    public void flush() {
+        long start = System.nanoTime();
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            throw new StoreException("Journal flush failed", e);
+        } finally {
+            FLUSH_TIME.recordSince(start);
+        }
+    }
+
+    // Applies the journal on top of freshly loaded snapshot lists.
+    // Returns the number of records replayed.
+    public int replayJournal(List<Book> books, List<User> users, List<Loan> loans) {
+        long start = System.nanoTime();
+        try {
+            return replay(journal.readRecords(), books, users, loans);
+        } finally {
+            REPLAY_TIME.recordSince(start);
+        }
+    }
+
+    private int replay(List<String[]> records, List<Book> books, List<User> users, List<Loan> loans) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        Map<String, Book> bookMap = new LinkedHashMap<>();
+        books.forEach(book -> bookMap.put(book.getId(), book));
+        Map<String, User> userMap = new LinkedHashMap<>();
+        users.forEach(user -> userMap.put(user.getId(), user));
+        Map<String, Loan> loanMap = new LinkedHashMap<>();
+        loans.forEach(loan -> loanMap.put(loan.getId(), loan));
+        StringPool strings = new StringPool();
+        bookMap.keySet().forEach(strings::canonical);
+        userMap.keySet().forEach(strings::canonical);
+
+        int replayed = 0;
+        for (String[] record : records) {
+            try {
+                boolean put = "PUT".equals(record[1]);
+                switch (record[0]) {
+                    case "BOOK" -> {
+                        if (put) bookMap.put(record[2], parseBook(record, 2, strings));
+                        else bookMap.remove(record[2]);
+                    }
+                    case "USER" -> {
+                        if (put) userMap.put(record[2], parseUser(record, 2, strings));
+                        else userMap.remove(record[2]);
+                    }
+                    case "LOAN" -> {
+                        if (put) loanMap.put(record[2], parseLoan(record, 2, strings));
+                        else loanMap.remove(record[2]);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown entity " + record[0]);
+                }
+                replayed++;
+            } catch (RuntimeException e) {
+                // Torn or corrupt tail: everything after it is unusable
+                System.err.println("Stopping journal replay at record " + replayed + ": " + e);
+                break;
+            }
+        }
+
+        books.clear();
+        books.addAll(bookMap.values());
+        users.clear();
+        users.addAll(userMap.values());
+        loans.clear();
+        loans.addAll(loanMap.values());
+        return replayed;
+    }
+
+    public void close() {
+        MetricsRegistry.getDefault().removeGauge("library_journal_records", journalRecords);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean isCompactionDue() {
+        return journal.getRecordCount() >= COMPACTION_THRESHOLD;
+    }
+
+    // Folds the journal back into the CSV snapshots and starts a fresh journal.
+    // The three files are replaced as one unit; the journal is only truncated
+    // once they are in place, and replaying it again on top of them is harmless.
+    public void compact(List<Book> books, List<User> users, List<Loan> loans) {
+        long start = System.nanoTime();
+        try {
+            compactJournal(books, users, loans);
+        } finally {
+            COMPACT_TIME.recordSince(start);
+        }
+    }
+
+    private void compactJournal(List<Book> books, List<User> users, List<Loan> loans) {
+        commit();
+        try {
+            stage(booksFile, BOOKS_HEADER, books, CSVHandler::bookRow);
+            stage(usersFile, USERS_HEADER, users, CSVHandler::userRow);
+            stage(loansFile, LOANS_HEADER, loans, CSVHandler::loanRow);
+            commitFiles(booksFile, usersFile, loansFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return; // Keep the journal: it still holds what the snapshots lack
+        }
+        writeBinarySnapshot(new LibraryData(books, users, loans));
+        try {
+            journal.truncate();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -204,36 +640,85 @@ public class CSVHandler {
 
     public void clearAllData() {
         try {
-            new FileWriter(BOOKS_FILE).close();
-            new FileWriter(USERS_FILE).close();
-            new FileWriter(LOANS_FILE).close();
-            writeHeaders(new File(BOOKS_FILE));
-            writeHeaders(new File(USERS_FILE));
-            writeHeaders(new File(LOANS_FILE));
+            stage(booksFile, BOOKS_HEADER, List.<Book>of(), CSVHandler::bookRow);
+            stage(usersFile, USERS_HEADER, List.<User>of(), CSVHandler::userRow);
+            stage(loansFile, LOANS_HEADER, List.<Loan>of(), CSVHandler::loanRow);
+            commitFiles(booksFile, usersFile, loansFile);
+            journal.truncate();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public void backupData() {
-        String backupDir = DATA_DIR + "/backup_" + LocalDate.now().toString();
-        new File(backupDir).mkdirs();
+    //***********************************************************************************
+    // Backups go to <data dir>/backups, incremental and compressed (see
+    // BackupArchive). The caller keeps compaction out while one runs and
+    // flushes first what it wants included; writers may carry on, since the
+    // journal is only backed up to its last flushed length. Nothing here
+    // touches the journal's channel, so interrupting (cancelling) a backup
+    // cannot break the journal.
 
+    // Returns the new backup's manifest; a failed backup is reported to the caller
+    public Path backupData() throws IOException {
+        long start = System.nanoTime();
         try {
-            Files.copy(new File(BOOKS_FILE).toPath(),
-                    new File(backupDir + "/books.csv").toPath(),
-                    StandardCopyOption.REPLACE_EXISTING);
-            Files.copy(new File(USERS_FILE).toPath(),
-                    new File(backupDir + "/users.csv").toPath(),
-                    StandardCopyOption.REPLACE_EXISTING);
-            Files.copy(new File(LOANS_FILE).toPath(),
-                    new File(backupDir + "/loans.csv").toPath(),
-                    StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            e.printStackTrace();
+            List<BackupArchive.Source> sources = List.of(
+                    backupSource(booksFile), backupSource(usersFile), backupSource(loansFile),
+                    new BackupArchive.Source("journal.log", journal.getPath(), journal.flushedLength()));
+            BackupArchive archive = backupArchive();
+            BackupArchive.Manifest manifest = archive.backup(sources);
+            archive.prune(BackupArchive.Retention.fromSystemProperties());
+            return manifest.file();
+        } finally {
+            BACKUP_TIME.recordSince(start);
         }
     }
 
+    // Oldest first
+    public List<BackupArchive.Manifest> listBackups() throws IOException {
+        return backupArchive().list();
+    }
+
+    // Puts the data files back as they were in the newest backup taken at or
+    // before pointInTime and returns that backup's manifest. The files are
+    // staged and swapped in like a compaction, so a crash leaves either the
+    // old set or the restored one. Only for data nobody has loaded: a running
+    // controller would keep its own copy and write it back over the restore.
+    public Path restoreBackup(Instant pointInTime) throws IOException {
+        long start = System.nanoTime();
+        try {
+            BackupArchive archive = backupArchive();
+            BackupArchive.Manifest manifest = archive.find(pointInTime);
+            if (manifest == null) {
+                throw new FileNotFoundException("No backup taken at or before " + pointInTime);
+            }
+            Map<String, Path> targets = new LinkedHashMap<>();
+            for (String filename : new String[]{booksFile, usersFile, loansFile, journalFile}) {
+                targets.put(Paths.get(filename).getFileName().toString(), Paths.get(tempFile(filename)));
+            }
+            archive.restore(manifest, targets);
+            journal.close();
+            try {
+                Files.deleteIfExists(Paths.get(snapshotFile));
+                commitFiles(booksFile, usersFile, loansFile, journalFile);
+            } finally {
+                journal = new Journal(journalFile); // Ends a transaction the backup caught open
+            }
+            return manifest.file();
+        } finally {
+            RESTORE_TIME.recordSince(start);
+        }
+    }
+
+    private BackupArchive backupArchive() {
+        return new BackupArchive(Paths.get(dataDir, "backups"));
+    }
+
+    private static BackupArchive.Source backupSource(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        return new BackupArchive.Source(path.getFileName().toString(), path, Files.size(path));
+    }
+
     private void createDefaultUsers() {
         List<User> defaultUsers = new ArrayList<>();
 
@@ -325,7 +810,7 @@ public class CSVHandler {
 
     // Add this method to check if users exist
     private boolean isUsersFileEmpty() {
-        try (CSVReader reader = new CSVReader(new FileReader(USERS_FILE))) {
+        try (CSVReader reader = new CSVReader(new FileReader(usersFile))) {
             // Skip header
             reader.readNext();
             // Check if there's at least one user
@@ -350,7 +835,7 @@ public class CSVHandler {
         }
 
         // Create default users if users file is empty or new
-        if (filename.equals(USERS_FILE) && (isNewFile || isUsersFileEmpty())) {
+        if (filename.equals(usersFile) && (isNewFile || isUsersFileEmpty())) {
             DefaultUsers();
         }
     }
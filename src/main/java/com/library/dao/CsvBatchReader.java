@@ -0,0 +1,112 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+import com.opencsv.CSVReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Streams a CSV export in the same formats as the snapshot files, one batch
+// at a time, so an import never holds the whole file in memory. A header row
+// (first field "id") is skipped; rows that do not parse are counted and
+// skipped. Progress is the number of bytes consumed so far.
+public class CsvBatchReader<T> implements Closeable {
+    private final CSVReader reader;
+    private final Function<String[], T> parser;
+    private final long totalBytes;
+    private long bytesRead;
+    private long malformed;
+    private boolean firstRow = true;
+
+    private CsvBatchReader(Path file, Function<String[], T> parser) throws IOException {
+        this.parser = parser;
+        this.totalBytes = Files.size(file);
+        InputStream counting = new FilterInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesRead++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) {
+                    bytesRead += n;
+                }
+                return n;
+            }
+        };
+        this.reader = new CSVReader(new InputStreamReader(counting, StandardCharsets.UTF_8));
+    }
+
+    // Each reader shares repeated strings among the rows it reads
+    public static CsvBatchReader<Book> books(Path file) throws IOException {
+        StringPool strings = new StringPool();
+        return new CsvBatchReader<>(file, line -> CSVHandler.parseBook(line, 0, strings));
+    }
+
+    public static CsvBatchReader<User> users(Path file) throws IOException {
+        StringPool strings = new StringPool();
+        return new CsvBatchReader<>(file, line -> CSVHandler.parseUser(line, 0, strings));
+    }
+
+    public static CsvBatchReader<Loan> loans(Path file) throws IOException {
+        StringPool strings = new StringPool();
+        return new CsvBatchReader<>(file, line -> CSVHandler.parseLoan(line, 0, strings));
+    }
+
+    // Up to maxSize entities; an empty list once the file is exhausted
+    public List<T> nextBatch(int maxSize) throws IOException {
+        List<T> batch = new ArrayList<>(maxSize);
+        try {
+            String[] line;
+            while (batch.size() < maxSize && (line = reader.readNext()) != null) {
+                if (firstRow) {
+                    firstRow = false;
+                    if (line.length > 0 && line[0].equalsIgnoreCase("id")) {
+                        continue;
+                    }
+                }
+                try {
+                    batch.add(parser.apply(line));
+                } catch (RuntimeException e) {
+                    malformed++;
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        return batch;
+    }
+
+    public long getMalformed() {
+        return malformed;
+    }
+
+    // Read through a buffer, so this runs slightly ahead of the rows returned
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
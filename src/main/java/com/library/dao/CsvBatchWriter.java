@@ -0,0 +1,54 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+import com.opencsv.CSVWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+// Streams entities into a CSV file in the snapshot format, header first,
+// so very large files can be produced without holding them in memory.
+// The counterpart of CsvBatchReader.
+public class CsvBatchWriter<T> implements Closeable {
+    private final CSVWriter writer;
+    private final Function<T, String[]> toRow;
+    private long written;
+
+    private CsvBatchWriter(Path file, String[] header, Function<T, String[]> toRow) throws IOException {
+        this.writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16));
+        this.toRow = toRow;
+        writer.writeNext(header);
+    }
+
+    public static CsvBatchWriter<Book> books(Path file) throws IOException {
+        return new CsvBatchWriter<>(file, CSVHandler.BOOKS_HEADER, CSVHandler::bookRow);
+    }
+
+    public static CsvBatchWriter<User> users(Path file) throws IOException {
+        return new CsvBatchWriter<>(file, CSVHandler.USERS_HEADER, CSVHandler::userRow);
+    }
+
+    public static CsvBatchWriter<Loan> loans(Path file) throws IOException {
+        return new CsvBatchWriter<>(file, CSVHandler.LOANS_HEADER, CSVHandler::loanRow);
+    }
+
+    public void write(T entity) {
+        writer.writeNext(toRow.apply(entity));
+        written++;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,147 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// The CSV backend: snapshots plus the append-only journal kept by CSVHandler
+public class CsvLibraryStore implements LibraryStore {
+    private final CSVHandler csvHandler;
+
+    private final BookRepository books = new BookRepository() {
+        @Override
+        public List<Book> findAll() {
+            return read().books();
+        }
+
+        @Override
+        public void save(Book book) {
+            csvHandler.journalBook(book);
+        }
+
+        @Override
+        public void delete(String bookId) {
+            csvHandler.journalBookDeletion(bookId);
+        }
+    };
+
+    private final UserRepository users = new UserRepository() {
+        @Override
+        public List<User> findAll() {
+            return read().users();
+        }
+
+        @Override
+        public void save(User user) {
+            csvHandler.journalUser(user);
+        }
+
+        @Override
+        public void delete(String userId) {
+            csvHandler.journalUserDeletion(userId);
+        }
+    };
+
+    private final LoanRepository loans = new LoanRepository() {
+        @Override
+        public List<Loan> findAll() {
+            return read().loans();
+        }
+
+        @Override
+        public void save(Loan loan) {
+            csvHandler.journalLoan(loan);
+        }
+
+        @Override
+        public void delete(String loanId) {
+            csvHandler.journalLoanDeletion(loanId);
+        }
+    };
+
+    public CsvLibraryStore(CSVHandler csvHandler) {
+        this.csvHandler = csvHandler;
+    }
+
+    public CSVHandler getCsvHandler() {
+        return csvHandler;
+    }
+
+    @Override
+    public BookRepository books() {
+        return books;
+    }
+
+    @Override
+    public UserRepository users() {
+        return users;
+    }
+
+    @Override
+    public LoanRepository loans() {
+        return loans;
+    }
+
+    // Snapshot plus journal replay; a replayed journal is folded back into
+    // the snapshot right away so it starts empty
+    @Override
+    public LibraryData load() {
+        return replay(csvHandler.loadSnapshot(), true);
+    }
+
+    // What findAll() returns: snapshot plus the journal as of its last
+    // flush, replayed in memory only. Reading writes no file.
+    private LibraryData read() {
+        return replay(csvHandler.readSnapshot(), false);
+    }
+
+    private LibraryData replay(LibraryData snapshot, boolean compact) {
+        List<Book> loadedBooks = new ArrayList<>(snapshot.books());
+        List<User> loadedUsers = new ArrayList<>(snapshot.users());
+        List<Loan> loadedLoans = new ArrayList<>(snapshot.loans());
+        if (csvHandler.replayJournal(loadedBooks, loadedUsers, loadedLoans) > 0 && compact) {
+            csvHandler.compact(loadedBooks, loadedUsers, loadedLoans);
+        }
+        return new LibraryData(loadedBooks, loadedUsers, loadedLoans);
+    }
+
+    @Override
+    public void commit() {
+        csvHandler.endTransaction();
+    }
+
+    @Override
+    public void abort() {
+        csvHandler.abortTransaction();
+    }
+
+    @Override
+    public void flush() {
+        csvHandler.flush();
+    }
+
+    @Override
+    public boolean isCheckpointDue() {
+        return csvHandler.isCompactionDue();
+    }
+
+    @Override
+    public void checkpoint(LibraryData current) {
+        csvHandler.compact(current.books(), current.users(), current.loans());
+    }
+
+    @Override
+    public Path backup() throws IOException {
+        return csvHandler.backupData();
+    }
+
+    @Override
+    public void close() {
+        csvHandler.close();
+    }
+}
@@ -0,0 +1,333 @@
+package com.library.dao;
+
+import com.library.model.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Embedded, file-based SQL backend (H2 in-process, no server). Rows are
+// written with prepared MERGE/DELETE statements inside one transaction per
+// unit of work; loans are indexed by user, book and due date and users by
+// email. On first start an empty database imports the existing CSV data.
+// A failed statement throws StoreException, so the controller rolls the
+// whole unit back instead of committing the rest of it.
+// Backups are H2 BACKUP TO zips of the database file under <data dir>/backups,
+// pruned with the same retention rules as the CSV backend's archive.
+public class JdbcLibraryStore implements LibraryStore {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS books (id VARCHAR PRIMARY KEY, title VARCHAR NOT NULL, "
+                    + "author VARCHAR NOT NULL, genre VARCHAR NOT NULL, publication_year INT NOT NULL, "
+                    + "available BOOLEAN NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS books_available ON books(available)",
+            "CREATE TABLE IF NOT EXISTS users (id VARCHAR PRIMARY KEY, name VARCHAR NOT NULL, "
+                    + "email VARCHAR NOT NULL, password VARCHAR NOT NULL, role VARCHAR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS users_email ON users(email)",
+            "CREATE TABLE IF NOT EXISTS loans (id VARCHAR PRIMARY KEY, user_id VARCHAR NOT NULL, "
+                    + "book_id VARCHAR NOT NULL, loan_date DATE NOT NULL, due_date DATE NOT NULL, "
+                    + "return_date DATE, penalty DOUBLE NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS loans_user ON loans(user_id)",
+            "CREATE INDEX IF NOT EXISTS loans_book ON loans(book_id)",
+            "CREATE INDEX IF NOT EXISTS loans_due ON loans(return_date, due_date)"
+    };
+    private static final String USER = "sa";
+    private static final String PASSWORD = "";
+    private static final String BACKUP_PREFIX = "library-";
+    private static final String BACKUP_SUFFIX = ".zip";
+    private static final DateTimeFormatter BACKUP_NAME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private final String url;
+    private final Path backupDir;
+    private final Connection connection;
+    private final PreparedStatement mergeBook;
+    private final PreparedStatement deleteBook;
+    private final PreparedStatement mergeUser;
+    private final PreparedStatement deleteUser;
+    private final PreparedStatement mergeLoan;
+    private final PreparedStatement deleteLoan;
+
+    private final BookRepository books = new BookRepository() {
+        @Override
+        public List<Book> findAll() {
+            return findBooks(new StringPool());
+        }
+
+        @Override
+        public void save(Book book) {
+            update(mergeBook, book.getId(), book.getTitle(), book.getAuthor(), book.getGenre(),
+                    book.getYear(), book.isAvailable());
+        }
+
+        @Override
+        public void delete(String bookId) {
+            update(deleteBook, bookId);
+        }
+    };
+
+    private final UserRepository users = new UserRepository() {
+        @Override
+        public List<User> findAll() {
+            return findUsers(new StringPool());
+        }
+
+        @Override
+        public void save(User user) {
+            update(mergeUser, user.getId(), user.getName(), user.getEmail(), user.getPassword(),
+                    user.getRole().name());
+        }
+
+        @Override
+        public void delete(String userId) {
+            update(deleteUser, userId);
+        }
+    };
+
+    private final LoanRepository loans = new LoanRepository() {
+        @Override
+        public List<Loan> findAll() {
+            return findLoans(new StringPool());
+        }
+
+        @Override
+        public void save(Loan loan) {
+            update(mergeLoan, loan.getId(), loan.getUserId(), loan.getBookId(),
+                    Date.valueOf(loan.getLoanDate()), Date.valueOf(loan.getDueDate()),
+                    loan.getReturnDate() != null ? Date.valueOf(loan.getReturnDate()) : null,
+                    loan.getPenalty());
+        }
+
+        @Override
+        public void delete(String loanId) {
+            update(deleteLoan, loanId);
+        }
+    };
+
+    // Repeated strings (authors, genres, the ids loans refer to) are shared
+    // through the pool, which is confined to the calling thread
+    private List<Book> findBooks(StringPool strings) {
+        List<Book> result = new ArrayList<>();
+        query("SELECT id, title, author, genre, publication_year, available FROM books", rs -> {
+            Book book = new Book(strings.canonical(rs.getString(1)), rs.getString(2),
+                    strings.canonical(rs.getString(3)), strings.canonical(rs.getString(4)), rs.getInt(5));
+            book.setAvailable(rs.getBoolean(6));
+            result.add(book);
+        });
+        return result;
+    }
+
+    private List<User> findUsers(StringPool strings) {
+        List<User> result = new ArrayList<>();
+        query("SELECT id, name, email, password, role FROM users", rs -> result.add(new User(
+                strings.canonical(rs.getString(1)), rs.getString(2), rs.getString(3), rs.getString(4),
+                UserRole.valueOf(rs.getString(5)))));
+        return result;
+    }
+
+    private List<Loan> findLoans(StringPool strings) {
+        List<Loan> result = new ArrayList<>();
+        query("SELECT id, user_id, book_id, loan_date, due_date, return_date, penalty FROM loans", rs -> {
+            Loan loan = new Loan(rs.getString(1), strings.canonical(rs.getString(2)), strings.canonical(rs.getString(3)),
+                    rs.getDate(4).toLocalDate(), rs.getDate(5).toLocalDate());
+            Date returnDate = rs.getDate(6);
+            if (returnDate != null) {
+                loan.setReturnDate(returnDate.toLocalDate());
+            }
+            loan.setPenalty(rs.getDouble(7));
+            result.add(loan);
+        });
+        return result;
+    }
+
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    public JdbcLibraryStore(String url, Path backupDir) throws SQLException {
+        this.url = url;
+        this.backupDir = backupDir;
+        this.connection = DriverManager.getConnection(url, USER, PASSWORD);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : SCHEMA) {
+                statement.execute(ddl);
+            }
+        }
+        connection.commit();
+        mergeBook = connection.prepareStatement("MERGE INTO books KEY (id) VALUES (?, ?, ?, ?, ?, ?)");
+        deleteBook = connection.prepareStatement("DELETE FROM books WHERE id = ?");
+        mergeUser = connection.prepareStatement("MERGE INTO users KEY (id) VALUES (?, ?, ?, ?, ?)");
+        deleteUser = connection.prepareStatement("DELETE FROM users WHERE id = ?");
+        mergeLoan = connection.prepareStatement("MERGE INTO loans KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        deleteLoan = connection.prepareStatement("DELETE FROM loans WHERE id = ?");
+    }
+
+    // Opens (or creates) the H2 database file and imports the CSV data
+    // found in csvDataDir into an empty one
+    public static JdbcLibraryStore openEmbedded(String csvDataDir, String databasePath) {
+        String url = "jdbc:h2:file:" + Paths.get(databasePath).toAbsolutePath();
+        try {
+            JdbcLibraryStore store = new JdbcLibraryStore(url, Paths.get(csvDataDir, "backups"));
+            if (store.isEmpty()) {
+                store.importFrom(new CsvLibraryStore(new CSVHandler(csvDataDir)));
+            }
+            return store;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open database " + url, e);
+        }
+    }
+
+    private boolean isEmpty() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT (SELECT COUNT(*) FROM books) + (SELECT COUNT(*) FROM users) + (SELECT COUNT(*) FROM loans)")) {
+            rs.next();
+            return rs.getLong(1) == 0;
+        }
+    }
+
+    private void importFrom(LibraryStore source) {
+        try (source) {
+            LibraryData data = source.load();
+            data.books().forEach(books::save);
+            data.users().forEach(users::save);
+            data.loans().forEach(loans::save);
+            commit();
+        } catch (StoreException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    // One pool for all three tables, so loans share the ids of their books and users
+    @Override
+    public LibraryData load() {
+        StringPool strings = new StringPool();
+        return new LibraryData(findBooks(strings), findUsers(strings), findLoans(strings));
+    }
+
+    @Override
+    public BookRepository books() {
+        return books;
+    }
+
+    @Override
+    public UserRepository users() {
+        return users;
+    }
+
+    @Override
+    public LoanRepository loans() {
+        return loans;
+    }
+
+    private synchronized void update(PreparedStatement statement, Object... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new StoreException("Database write failed", e);
+        }
+    }
+
+    private synchronized void query(String sql, RowHandler handler) {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                handler.handle(rs);
+            }
+        } catch (SQLException e) {
+            throw new StoreException("Database read failed", e);
+        }
+    }
+
+    @Override
+    public synchronized void commit() {
+        try {
+            connection.commit();
+        } catch (SQLException e) {
+            throw new StoreException("Database commit failed", e);
+        }
+    }
+
+    @Override
+    public synchronized void abort() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            throw new StoreException("Database rollback failed", e);
+        }
+    }
+
+    // Runs on a connection of its own, so it neither waits for nor sees the
+    // unit of work in progress; BACKUP TO copies the committed state. The zip
+    // gets its final name only once complete.
+    @Override
+    public Path backup() throws IOException {
+        Files.createDirectories(backupDir);
+        Path target = backupDir.resolve(BACKUP_PREFIX + BACKUP_NAME.format(Instant.now()) + BACKUP_SUFFIX);
+        Path partial = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Connection backupConnection = DriverManager.getConnection(url, USER, PASSWORD);
+             Statement statement = backupConnection.createStatement()) {
+            statement.execute("BACKUP TO '" + partial.toAbsolutePath().toString().replace("'", "''") + "'");
+        } catch (SQLException e) {
+            Files.deleteIfExists(partial);
+            throw new IOException("Database backup failed", e);
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        prune(BackupArchive.Retention.fromSystemProperties());
+        return target;
+    }
+
+    private void prune(BackupArchive.Retention retention) throws IOException {
+        List<Path> all;
+        try (Stream<Path> files = Files.list(backupDir)) {
+            all = files.filter(file -> backupTime(file) != null)
+                    .sorted(Comparator.comparing(JdbcLibraryStore::backupTime))
+                    .toList();
+        }
+        Set<Path> keep = retention.select(all, JdbcLibraryStore::backupTime);
+        for (Path file : all) {
+            if (!keep.contains(file)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // When the backup in `file` was taken, or null if it is not one
+    private static Instant backupTime(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(BACKUP_PREFIX) || !name.endsWith(BACKUP_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Instant.from(BACKUP_NAME.parse(
+                    name.substring(BACKUP_PREFIX.length(), name.length() - BACKUP_SUFFIX.length())));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Every unit of work has been committed or rolled back by now
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.library.dao;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only log of mutations, one CSV record per change.
+// append() only buffers the record in memory; endTransaction() closes the
+// current transaction with a COMMIT record, and flush() writes everything
+// buffered so far and fsyncs it with a single force() call, so callers that
+// flush concurrently share one disk flush (group commit). On replay only
+// records followed by their COMMIT are returned, so a transaction is applied
+// whole or not at all. A flush that fails keeps its records buffered and is
+// retried by the next one, which first cuts off whatever part of the failed
+// write reached the file (and reopens the file if the failure closed it).
+public class Journal implements Closeable {
+    private static final String[] COMMIT_RECORD = {"TX", "COMMIT"};
+    private static final String[] ABORT_RECORD = {"TX", "ABORT"};
+
+    private final Path path;
+    private FileChannel channel; // Guarded by commitLock
+    private final StringWriter buffer = new StringWriter();
+    private final CSVWriter bufferWriter = new CSVWriter(buffer);
+    private final Object commitLock = new Object();
+    private long appendedRecords; // Every line buffered so far, TX records included
+    private long committedRecords;
+    private long flushedLength; // Bytes of whole records in the file; guarded by commitLock
+    private boolean tornWrite; // Guarded by commitLock
+    private int recordCount;
+    private boolean transactionOpen;
+
+    public Journal(String filename) throws IOException {
+        this.path = Paths.get(filename);
+        this.channel = open(path);
+        this.flushedLength = channel.size();
+        if (flushedLength > 0) {
+            // The file may end in a transaction torn by a crash; make sure the
+            // next COMMIT written does not adopt those records
+            bufferWriter.writeNext(ABORT_RECORD);
+            appendedRecords++;
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized void append(String... record) {
+        bufferWriter.writeNext(record);
+        appendedRecords++;
+        recordCount++;
+        transactionOpen = true;
+    }
+
+    // The COMMIT counts as appended, so a flush that already caught up with
+    // the transaction's records still writes it
+    public synchronized void endTransaction() {
+        if (transactionOpen) {
+            bufferWriter.writeNext(COMMIT_RECORD);
+            appendedRecords++;
+            transactionOpen = false;
+        }
+    }
+
+    // Discards the records of the open transaction: replay drops everything
+    // between the previous COMMIT and this ABORT
+    public synchronized void abortTransaction() {
+        if (transactionOpen) {
+            bufferWriter.writeNext(ABORT_RECORD);
+            appendedRecords++;
+            transactionOpen = false;
+        }
+    }
+
+    public void commit() throws IOException {
+        endTransaction();
+        flush();
+    }
+
+    // Does not end a transaction: records of one still being appended by
+    // another thread may reach the disk, but stay inert until their COMMIT
+    public void flush() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appendedRecords;
+        }
+        synchronized (commitLock) {
+            if (committedRecords >= target) {
+                return; // Already flushed by a concurrent commit
+            }
+            String pending;
+            long upTo;
+            synchronized (this) {
+                pending = buffer.toString();
+                upTo = appendedRecords;
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(pending);
+            int length = bytes.remaining();
+            try {
+                prepareForWrite();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                tornWrite = true;
+                throw e;
+            }
+            flushedLength += length;
+            synchronized (this) {
+                buffer.getBuffer().delete(0, pending.length()); // Appends made meanwhile stay
+            }
+            committedRecords = upTo;
+        }
+    }
+
+    // After a failed write: reopen the file if the failure closed it, and
+    // drop any part of the failed write, which is retried whole
+    private void prepareForWrite() throws IOException {
+        if (!channel.isOpen()) {
+            channel = open(path);
+        }
+        if (tornWrite) {
+            channel.truncate(flushedLength);
+            tornWrite = false;
+        }
+    }
+
+    // Reads back the records of every committed transaction. A transaction
+    // cut short by a crash is at the end of the file and is dropped.
+    public List<String[]> readRecords() {
+        List<String[]> records = new ArrayList<>();
+        List<String[]> pending = new ArrayList<>();
+        int discarded = 0;
+        try (CSVReader reader = new CSVReader(new InputStreamReader(
+                new FileInputStream(path.toFile()), StandardCharsets.UTF_8))) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                if (Arrays.equals(line, COMMIT_RECORD)) {
+                    records.addAll(pending);
+                    pending.clear();
+                } else if (Arrays.equals(line, ABORT_RECORD)) {
+                    discarded += pending.size();
+                    pending.clear();
+                } else {
+                    pending.add(line);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Journal truncated after " + records.size() + " records: " + e.getMessage());
+        }
+        discarded += pending.size();
+        if (discarded > 0) {
+            System.err.println("Dropping " + discarded + " journal records of uncommitted transactions");
+        }
+        synchronized (this) {
+            recordCount = records.size();
+        }
+        return records;
+    }
+
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    // Called once the snapshot files contain everything in the journal.
+    public void truncate() throws IOException {
+        synchronized (commitLock) {
+            synchronized (this) {
+                buffer.getBuffer().setLength(0);
+                committedRecords = appendedRecords;
+                recordCount = 0;
+                transactionOpen = false;
+            }
+            if (!channel.isOpen()) {
+                channel = open(path);
+            }
+            channel.truncate(0);
+            channel.force(true);
+            flushedLength = 0;
+            tornWrite = false;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Length of the file as of the last successful flush, so it ends on a
+    // whole record; a transaction still open there stays inert without its
+    // COMMIT. Kept in memory: callers on cancellable threads never touch the
+    // channel, since an interrupt during channel I/O closes it.
+    public long flushedLength() {
+        synchronized (commitLock) {
+            return flushedLength;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            synchronized (commitLock) {
+                channel.close();
+            }
+        }
+    }
+}
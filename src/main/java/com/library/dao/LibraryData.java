@@ -0,0 +1,11 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+
+import java.util.List;
+
+// Everything the controller loads at startup
+public record LibraryData(List<Book> books, List<User> users, List<Loan> loans) {
+}
@@ -0,0 +1,58 @@
+package com.library.dao;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Storage backend behind the controller. Saves and deletes made through the
+// repositories form one unit of work that commit() makes atomic, so a loan
+// and its book's availability always land together. Backends that batch
+// their disk syncs only guarantee durability once flush() returns; flush()
+// may run concurrently with other threads' units of work.
+// Select the backend with -Dlibrary.store=csv (default) or -Dlibrary.store=h2,
+// and where it keeps its files with -Dlibrary.data.dir.
+public interface LibraryStore extends AutoCloseable {
+    BookRepository books();
+
+    UserRepository users();
+
+    LoanRepository loans();
+
+    // Everything at startup; backends may do this faster than three findAll() calls
+    default LibraryData load() {
+        return new LibraryData(books().findAll(), users().findAll(), loans().findAll());
+    }
+
+    void commit();
+
+    // Discards the saves and deletes of the unit of work in progress
+    void abort();
+
+    default void flush() {
+    }
+
+    // Housekeeping that needs the full current state, e.g. journal compaction
+    default boolean isCheckpointDue() {
+        return false;
+    }
+
+    default void checkpoint(LibraryData current) {
+    }
+
+    // Backs the store's files up and returns what identifies the backup. The
+    // caller keeps checkpoints out while it runs; writers may carry on.
+    Path backup() throws IOException;
+
+    @Override
+    void close();
+
+    static LibraryStore open() {
+        String backend = System.getProperty("library.store", "csv");
+        String dataDir = System.getProperty("library.data.dir", CSVHandler.DATA_DIR);
+        return switch (backend) {
+            case "csv" -> new CsvLibraryStore(new CSVHandler(dataDir));
+            case "h2" -> JdbcLibraryStore.openEmbedded(dataDir, Paths.get(dataDir, "library").toString());
+            default -> throw new IllegalArgumentException("Unknown library.store: " + backend);
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.library.dao;
+
+import com.library.model.Loan;
+
+import java.util.List;
+
+public interface LoanRepository {
+    List<Loan> findAll();
+
+    void save(Loan loan);
+
+    void delete(String loanId);
+}
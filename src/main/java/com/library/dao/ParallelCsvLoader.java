@@ -0,0 +1,119 @@
+package com.library.dao;
+
+import com.opencsv.CSVReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Loads a CSV file with a header row by memory-mapping it, splitting it into
+// chunks at record boundaries (newlines outside quoted fields) and parsing the
+// chunks in parallel on a fork-join pool. Entities come back in file order.
+// Each chunk gets a parser of its own from the factory, so a parser may keep
+// state (such as a StringPool) confined to the thread parsing its chunk.
+public class ParallelCsvLoader {
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 64 << 20;
+    private static final long SCAN_WINDOW_BYTES = 256 << 20;
+
+    private ParallelCsvLoader() {
+    }
+
+    public static <T> List<T> load(Path file, Supplier<Function<String[], T>> parsers) throws IOException {
+        return load(file, parsers, ForkJoinPool.commonPool());
+    }
+
+    public static <T> List<T> load(Path file, Supplier<Function<String[], T>> parsers, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkBytes = Math.min(MAX_CHUNK_BYTES,
+                    Math.max(MIN_CHUNK_BYTES, size / (pool.getParallelism() * 4L)));
+            List<long[]> chunks = split(channel, size, chunkBytes);
+
+            List<List<T>> parsed = pool.submit(() -> chunks.parallelStream()
+                    .map(chunk -> parseChunk(channel, chunk[0], chunk[1], parsers.get()))
+                    .toList()).get();
+
+            List<T> entities = new ArrayList<>(parsed.stream().mapToInt(List::size).sum());
+            parsed.forEach(entities::addAll);
+            return entities;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Failed to load " + file, e.getCause());
+        }
+    }
+
+    // Returns [start, end) byte ranges, the first one starting after the header.
+    // Finding boundaries needs the quote parity, so this is one sequential
+    // byte scan; it is much cheaper than parsing and decoding.
+    private static List<long[]> split(FileChannel channel, long size, long chunkBytes) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long chunkStart = -1;
+        long nextSplit = 0;
+        boolean inQuotes = false;
+        for (long windowStart = 0; windowStart < size; windowStart += SCAN_WINDOW_BYTES) {
+            long windowLength = Math.min(SCAN_WINDOW_BYTES, size - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            for (int i = 0; i < windowLength; i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    long position = windowStart + i;
+                    if (chunkStart < 0) {
+                        chunkStart = position + 1; // End of the header
+                        nextSplit = chunkStart + chunkBytes;
+                    } else if (position >= nextSplit) {
+                        chunks.add(new long[]{chunkStart, position + 1});
+                        chunkStart = position + 1;
+                        nextSplit = chunkStart + chunkBytes;
+                    }
+                }
+            }
+        }
+        if (chunkStart >= 0 && chunkStart < size) {
+            chunks.add(new long[]{chunkStart, size});
+        }
+        return chunks;
+    }
+
+    private static <T> List<T> parseChunk(FileChannel channel, long start, long end, Function<String[], T> parser) {
+        List<T> entities = new ArrayList<>();
+        try {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            String text = StandardCharsets.UTF_8.decode(bytes).toString();
+            try (CSVReader reader = new CSVReader(new StringReader(text))) {
+                String[] line;
+                while ((line = reader.readNext()) != null) {
+                    try {
+                        entities.add(parser.apply(line));
+                    } catch (RuntimeException e) {
+                        System.err.println("Skipping malformed record " + String.join(",", line) + ": " + e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,9 @@
+package com.library.dao;
+
+// A read or write the storage backend could not carry out. Thrown inside a
+// unit of work, it makes the controller roll the unit back.
+public class StoreException extends RuntimeException {
+    public StoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
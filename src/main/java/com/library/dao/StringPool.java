@@ -0,0 +1,44 @@
+package com.library.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Canonical instances of strings that repeat across the records of one
+// load: authors, genres, and the user and book ids every loan refers to.
+// Without it each row brings its own copy, so a book borrowed a thousand
+// times has its id in memory a thousand and one times. A pool belongs to
+// one load and is confined to one thread; it is garbage once the load is
+// done, and the entities keep the shared strings.
+// Chunks parsed in parallel each get a child pool, which first looks a
+// value up in its parent (e.g. the book and user ids, for the loans) and
+// keeps the rest to itself. The parent must not change while children use it.
+class StringPool {
+    private final StringPool parent;
+    private final Map<String, String> strings = new HashMap<>();
+
+    StringPool() {
+        this(null);
+    }
+
+    private StringPool(StringPool parent) {
+        this.parent = parent;
+    }
+
+    StringPool child() {
+        return new StringPool(this);
+    }
+
+    String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (parent != null) {
+            String shared = parent.strings.get(value);
+            if (shared != null) {
+                return shared;
+            }
+        }
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
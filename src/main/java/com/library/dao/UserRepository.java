@@ -0,0 +1,13 @@
+package com.library.dao;
+
+import com.library.model.User;
+
+import java.util.List;
+
+public interface UserRepository {
+    List<User> findAll();
+
+    void save(User user);
+
+    void delete(String userId);
+}
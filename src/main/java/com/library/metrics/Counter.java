@@ -0,0 +1,20 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic count of events; increments from many threads don't contend
+public class Counter {
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
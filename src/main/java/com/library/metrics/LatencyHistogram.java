@@ -0,0 +1,98 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram over nanoseconds. Buckets are log-linear:
+// every power of two is split into 16 equal sub-buckets, so any recorded
+// value is reported within 1/16 (about 6%) of its true value while the
+// whole range fits in under a thousand counters. Recording is a few atomic
+// adds, cheap enough for every call on a hot path.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public record Snapshot(long count, long sumNanos, long maxNanos,
+                           long p50Nanos, long p95Nanos, long p99Nanos, long p999Nanos) {
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) sumNanos / count;
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    // Records the time elapsed since a System.nanoTime() reading
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Concurrent records may land between the reads, so the figures can be
+    // a few events apart from each other; fine for monitoring
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long maxNanos = max.get();
+        return new Snapshot(total, sum.sum(), maxNanos,
+                percentile(counts, total, 0.50, maxNanos),
+                percentile(counts, total, 0.95, maxNanos),
+                percentile(counts, total, 0.99, maxNanos),
+                percentile(counts, total, 0.999, maxNanos));
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long maxNanos) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    // Values below 16 get a bucket each; above that, the top four bits after
+    // the leading one pick the sub-bucket within the value's power of two
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        long lowest = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
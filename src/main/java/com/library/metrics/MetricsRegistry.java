@@ -0,0 +1,234 @@
+package com.library.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.DoubleSupplier;
+
+// Process-wide registry of counters, latency histograms and gauges. A metric
+// is identified by a Prometheus-style name plus optional label pairs, e.g.
+// histogram("library_operation_seconds", "...", "operation", "searchBooks").
+// Look metrics up once and keep the reference on hot paths; the lookup
+// itself builds a key string.
+//
+// Histograms record nanoseconds and are exported in seconds, as summaries
+// with 0.5/0.95/0.99/0.999 quantiles.
+public class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    public enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    // One exported series: the value of a counter or gauge, or a histogram snapshot
+    public record Sample(String name, String help, Type type, Map<String, String> labels,
+                         double value, LatencyHistogram.Snapshot histogram) {
+    }
+
+    private record Family(String name, String help, Type type, ConcurrentMap<Map<String, String>, Object> series) {
+    }
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series()
+                .computeIfAbsent(labelMap(labels), key -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).series()
+                .computeIfAbsent(labelMap(labels), key -> new LatencyHistogram());
+    }
+
+    // Registers, or replaces, a gauge whose value is read at export time
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series().put(labelMap(labels), value);
+    }
+
+    // Unregisters the gauge so the registry stops holding what it reads,
+    // unless a later gauge(...) has already replaced it
+    public void removeGauge(String name, DoubleSupplier value, String... labels) {
+        Family family = families.get(name);
+        if (family != null && family.type() == Type.GAUGE) {
+            family.series().remove(labelMap(labels), value);
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name,
+                key -> new Family(name, help, type, new ConcurrentHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type());
+        }
+        return family;
+    }
+
+    private static Map<String, String> labelMap(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        Map<String, String> map = new TreeMap<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            map.put(labels[i], labels[i + 1]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    // Every series, sorted by name and then labels
+    public List<Sample> samples() {
+        List<Sample> samples = new ArrayList<>();
+        for (Family family : families.values()) {
+            family.series().forEach((labels, metric) -> samples.add(sample(family, labels, metric)));
+        }
+        samples.sort(Comparator.comparing(Sample::name).thenComparing(sample -> sample.labels().toString()));
+        return samples;
+    }
+
+    private static Sample sample(Family family, Map<String, String> labels, Object metric) {
+        return switch (family.type()) {
+            case COUNTER -> new Sample(family.name(), family.help(), family.type(), labels,
+                    ((Counter) metric).get(), null);
+            case GAUGE -> new Sample(family.name(), family.help(), family.type(), labels,
+                    readGauge((DoubleSupplier) metric), null);
+            case HISTOGRAM -> {
+                LatencyHistogram.Snapshot snapshot = ((LatencyHistogram) metric).snapshot();
+                yield new Sample(family.name(), family.help(), family.type(), labels, snapshot.count(), snapshot);
+            }
+        };
+    }
+
+    private static double readGauge(DoubleSupplier gauge) {
+        try {
+            return gauge.getAsDouble();
+        } catch (RuntimeException e) {
+            return Double.NaN; // A gauge must never break an export
+        }
+    }
+
+    //***********************************************************************************
+    // Exports
+
+    // Prometheus text exposition format (version 0.0.4)
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        String family = null;
+        for (Sample sample : samples()) {
+            if (!sample.name().equals(family)) {
+                family = sample.name();
+                out.append("# HELP ").append(family).append(' ').append(sample.help()).append('\n');
+                out.append("# TYPE ").append(family).append(' ')
+                        .append(sample.type() == Type.HISTOGRAM ? "summary" : sample.type().name().toLowerCase())
+                        .append('\n');
+            }
+            if (sample.type() != Type.HISTOGRAM) {
+                appendLine(out, sample.name(), sample.labels(), null, sample.value());
+                continue;
+            }
+            LatencyHistogram.Snapshot h = sample.histogram();
+            appendLine(out, sample.name(), sample.labels(), "0.5", seconds(h.p50Nanos()));
+            appendLine(out, sample.name(), sample.labels(), "0.95", seconds(h.p95Nanos()));
+            appendLine(out, sample.name(), sample.labels(), "0.99", seconds(h.p99Nanos()));
+            appendLine(out, sample.name(), sample.labels(), "0.999", seconds(h.p999Nanos()));
+            appendLine(out, sample.name() + "_sum", sample.labels(), null, seconds(h.sumNanos()));
+            appendLine(out, sample.name() + "_count", sample.labels(), null, h.count());
+        }
+        return out.toString();
+    }
+
+    private static void appendLine(StringBuilder out, String name, Map<String, String> labels,
+                                   String quantile, double value) {
+        out.append(name);
+        Map<String, String> all = labels;
+        if (quantile != null) {
+            all = new TreeMap<>(labels);
+            all.put("quantile", quantile);
+        }
+        if (!all.isEmpty()) {
+            StringJoiner joiner = new StringJoiner(",", "{", "}");
+            all.forEach((key, labelValue) -> joiner.add(key + "=\"" + labelValue
+                    .replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\""));
+            out.append(joiner);
+        }
+        out.append(' ').append(formatNumber(value)).append('\n');
+    }
+
+    public String toJson() {
+        StringJoiner metrics = new StringJoiner(",\n    ", "{\n  \"timestamp\": " + System.currentTimeMillis()
+                + ",\n  \"metrics\": [\n    ", "\n  ]\n}\n");
+        for (Sample sample : samples()) {
+            StringBuilder json = new StringBuilder("{\"name\": ").append(jsonString(sample.name()))
+                    .append(", \"type\": ").append(jsonString(sample.type().name().toLowerCase()))
+                    .append(", \"labels\": {");
+            StringJoiner labels = new StringJoiner(", ");
+            sample.labels().forEach((key, value) -> labels.add(jsonString(key) + ": " + jsonString(value)));
+            json.append(labels).append('}');
+            if (sample.type() == Type.HISTOGRAM) {
+                LatencyHistogram.Snapshot h = sample.histogram();
+                json.append(", \"count\": ").append(h.count())
+                        .append(", \"sumSeconds\": ").append(formatNumber(seconds(h.sumNanos())))
+                        .append(", \"meanSeconds\": ").append(formatNumber(seconds(h.meanNanos())))
+                        .append(", \"p50Seconds\": ").append(formatNumber(seconds(h.p50Nanos())))
+                        .append(", \"p95Seconds\": ").append(formatNumber(seconds(h.p95Nanos())))
+                        .append(", \"p99Seconds\": ").append(formatNumber(seconds(h.p99Nanos())))
+                        .append(", \"p999Seconds\": ").append(formatNumber(seconds(h.p999Nanos())))
+                        .append(", \"maxSeconds\": ").append(formatNumber(seconds(h.maxNanos())));
+            } else {
+                double value = sample.value();
+                json.append(", \"value\": ").append(Double.isFinite(value) ? formatNumber(value) : "null");
+            }
+            metrics.add(json.append('}'));
+        }
+        return metrics.toString();
+    }
+
+    // Writes toJson() for a ".json" file and the Prometheus format otherwise,
+    // e.g. into a node_exporter textfile collector directory
+    public void writeTo(Path file) throws IOException {
+        String text = file.getFileName().toString().toLowerCase().endsWith(".json") ? toJson() : toPrometheus();
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+
+    private static double seconds(double nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return String.valueOf(value);
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
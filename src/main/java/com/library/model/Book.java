@@ -16,6 +16,16 @@ public class Book {
         this.year = year;
         this.available = true;
 }
+
+    public Book(Book other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.author = other.author;
+        this.genre = other.genre;
+        this.year = other.year;
+        this.available = other.available;
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
     public String getTitle() { return title; }
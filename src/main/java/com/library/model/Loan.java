@@ -2,21 +2,42 @@ package com.library.model;
 
 import java.time.LocalDate;
 
+// Dates are kept as epoch-day ints (days since 1970-01-01) rather than three
+// LocalDate objects, and the user and book ids are the strings the user and
+// book themselves hold (the loaders and the controller see to that), so a
+// loan costs one small object plus its own id. The LocalDate accessors
+// convert on the fly; hot paths use the day accessors.
 public class Loan {
+    public static final int NOT_RETURNED = Integer.MIN_VALUE;
+
     private String id;
     private String userId;
     private String bookId;
-    private LocalDate loanDate;
-    private LocalDate dueDate;
-    private LocalDate returnDate;
+    private int loanDay;
+    private int dueDay;
+    private int returnDay = NOT_RETURNED;
     private double penalty;
 
     public Loan(String id, String userId, String bookId, LocalDate loanDate, LocalDate dueDate) {
+        this(id, userId, bookId, (int) loanDate.toEpochDay(), (int) dueDate.toEpochDay());
+    }
+
+    public Loan(String id, String userId, String bookId, int loanDay, int dueDay) {
         this.id = id;
         this.userId = userId;
         this.bookId = bookId;
-        this.loanDate = loanDate;
-        this.dueDate = dueDate;
+        this.loanDay = loanDay;
+        this.dueDay = dueDay;
+    }
+
+    public Loan(Loan other) {
+        this.id = other.id;
+        this.userId = other.userId;
+        this.bookId = other.bookId;
+        this.loanDay = other.loanDay;
+        this.dueDay = other.dueDay;
+        this.returnDay = other.returnDay;
+        this.penalty = other.penalty;
     }
 
     // Getters and setters
@@ -26,12 +47,22 @@ public class Loan {
     public void setUserId(String userId) { this.userId = userId; }
     public String getBookId() { return bookId; }
     public void setBookId(String bookId) { this.bookId = bookId; }
-    public LocalDate getLoanDate() { return loanDate; }
-    public void setLoanDate(LocalDate loanDate) { this.loanDate = loanDate; }
-    public LocalDate getDueDate() { return dueDate; }
-    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
-    public LocalDate getReturnDate() { return returnDate; }
-    public void setReturnDate(LocalDate returnDate) { this.returnDate = returnDate; }
+    public LocalDate getLoanDate() { return LocalDate.ofEpochDay(loanDay); }
+    public void setLoanDate(LocalDate loanDate) { this.loanDay = (int) loanDate.toEpochDay(); }
+    public LocalDate getDueDate() { return LocalDate.ofEpochDay(dueDay); }
+    public void setDueDate(LocalDate dueDate) { this.dueDay = (int) dueDate.toEpochDay(); }
+    public LocalDate getReturnDate() { return returnDay != NOT_RETURNED ? LocalDate.ofEpochDay(returnDay) : null; }
+    public void setReturnDate(LocalDate returnDate) {
+        this.returnDay = returnDate != null ? (int) returnDate.toEpochDay() : NOT_RETURNED;
+    }
     public double getPenalty() { return penalty; }
     public void setPenalty(double penalty) { this.penalty = penalty; }
-}
\ No newline at end of file
+
+    public int getLoanDay() { return loanDay; }
+    public void setLoanDay(int loanDay) { this.loanDay = loanDay; }
+    public int getDueDay() { return dueDay; }
+    public void setDueDay(int dueDay) { this.dueDay = dueDay; }
+    public int getReturnDay() { return returnDay; }
+    public void setReturnDay(int returnDay) { this.returnDay = returnDay; }
+    public boolean isReturned() { return returnDay != NOT_RETURNED; }
+}
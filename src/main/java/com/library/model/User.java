@@ -6,6 +6,7 @@ public class User {
     private String email;
     private String password;
     private UserRole role;
+    private boolean passwordHashed; // password is a PasswordHasher hash, not plain text
 
     public User(String id, String name, String email, String password, UserRole role) {
         this.id = id;
@@ -15,6 +16,15 @@ public class User {
         this.role = role;
     }
 
+    public User(User other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.email = other.email;
+        this.password = other.password;
+        this.role = other.role;
+        this.passwordHashed = other.passwordHashed;
+    }
+
     // Getters and setters
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -23,7 +33,17 @@ public class User {
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
     public String getPassword() { return password; }
-    public void setPassword(String password) { this.password = password; }
+    // Plain text. LibraryController.addUser hashes it; updateUser only takes
+    // a new password set through setPasswordHash.
+    public void setPassword(String password) {
+        this.password = password;
+        this.passwordHashed = false;
+    }
+    public void setPasswordHash(String hash) {
+        this.password = hash;
+        this.passwordHashed = true;
+    }
+    public boolean isPasswordHashed() { return passwordHashed; }
     public UserRole getRole() { return role; }
     public void setRole(UserRole role) { this.role = role; }
 }
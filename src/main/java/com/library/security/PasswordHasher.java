@@ -0,0 +1,96 @@
+package com.library.security;
+
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.Semaphore;
+
+// Salted PBKDF2-HMAC-SHA512 password hashes, stored as
+//   pbkdf2-sha512$<iterations>$<salt>$<hash>
+// with Base64 salt and hash. The cost is tunable with
+// -Dlibrary.password.iterations (default 210,000, the OWASP figure for
+// this PRF); hashes made at a lower cost still verify and are upgraded on
+// the next successful login. Values without the prefix are legacy plain
+// text passwords from before hashing.
+//
+// At most one derivation per core runs at a time and callers queue for a
+// permit in arrival order, so a burst of logins is served first come,
+// first served instead of every thread slowing every other one down.
+public final class PasswordHasher {
+    private static final String PREFIX = "pbkdf2-sha512$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 512;
+    public static final int ITERATIONS = Integer.getInteger("library.password.iterations", 210_000);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Semaphore PERMITS = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+    private static final LatencyHistogram DERIVE_TIME = MetricsRegistry.getDefault().histogram(
+            "library_password_hash_seconds", "PBKDF2 derivations, including the wait for a permit");
+
+    private PasswordHasher() {
+    }
+
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + ITERATIONS + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, ITERATIONS));
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    // True when the stored value is plain text or was hashed at a lower cost
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < ITERATIONS;
+    }
+
+    // Comparisons are constant-time; a malformed hash never matches
+    public static boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            String[] parts = stored.split("\\$");
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] salt = base64.decode(parts[2]);
+            byte[] expected = base64.decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(password, salt, Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        long start = System.nanoTime();
+        PERMITS.acquireUninterruptibly();
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            PERMITS.release();
+            spec.clearPassword();
+            DERIVE_TIME.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package com.library.server;
+
+import com.library.controller.LibraryController;
+import com.library.controller.Page;
+import com.library.controller.Session;
+import com.library.metrics.Counter;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+import com.library.model.UserRole;
+import com.library.tasks.TaskExecutor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Headless server mode: one LibraryController, loaded once, shared by every
+// desk and kiosk through a small JSON API over HTTP. Each request runs on
+// its own virtual thread on JDK 21+ and on a bounded platform thread pool
+// on JDK 17; either way the controller's lock does the coordination.
+//
+//   java com.library.server.LibraryServer --port=8080 [--bind=127.0.0.1] [-Dlibrary.data.dir=...]
+//
+//   POST   /api/sessions              {"email", "password"} -> {"token", "user"}
+//   DELETE /api/sessions/current      logout
+//   GET    /api/books?q=&available=&offset=&limit=
+//   GET    /api/books/popular?limit=&days=
+//   GET    /api/books/{id}
+//   POST   /api/books                 {"title", "author", "genre", "year"}      staff
+//   GET    /api/users?q=&offset=&limit=                                       staff
+//   GET    /api/users/{id}                                                    self or staff
+//   GET    /api/loans?user=&book=&status=active|overdue&offset=&limit=        members see their own
+//   POST   /api/loans                 {"userId", "bookIds": [...]}            checkout
+//   POST   /api/loans/{id}/return
+//   GET    /api/stats
+//   GET    /metrics                   Prometheus text
+//
+// Every /api call except the login carries "Authorization: Bearer <token>".
+// Errors are {"error": message} with 400 for bad input, 401/403 for
+// authentication and roles, 404 for unknown ids and 409 when a checkout or
+// return conflicts with the current state.
+public class LibraryServer implements AutoCloseable {
+    private static final int DEFAULT_PAGE = 50;
+    private static final int MAX_PAGE = 1000;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final Set<String> ROUTE_WORDS = Set.of("sessions", "current", "books", "popular",
+            "users", "loans", "return", "stats");
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's
+        // algorithm on, every small response then waits out the client's
+        // delayed ACK (~40 ms). Read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final LibraryController controller;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> responses = new ConcurrentHashMap<>();
+
+    // Thrown by the handlers to answer with an error status
+    private static final class HttpError extends RuntimeException {
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private record Response(int status, Object body) {
+    }
+
+    public LibraryServer(LibraryController controller, InetSocketAddress address) throws IOException {
+        this.controller = controller;
+        this.executor = TaskExecutor.newVirtualThreadExecutor("library-http",
+                Math.max(16, Runtime.getRuntime().availableProcessors() * 8));
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/api/", this::handle);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+    }
+
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // Stops accepting requests and gives those in flight a second to finish;
+    // the controller stays open and belongs to the caller
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //***********************************************************************************
+    // Dispatch
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Response response;
+        try {
+            response = route(exchange, method, path);
+        } catch (HttpError e) {
+            response = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = error(400, e.getMessage());
+        } catch (IllegalStateException e) {
+            response = error(409, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            response = error(500, "Internal error");
+        }
+        try {
+            send(exchange, response.status(), "application/json; charset=utf-8",
+                    response.body() != null ? Json.write(response.body()) : null);
+        } finally {
+            timer(method + " /api/" + template(path)).recordSince(start);
+            responses.computeIfAbsent(response.status(), status -> metrics.counter("library_http_responses_total",
+                    "HTTP API responses by status code", "status", String.valueOf(status))).increment();
+        }
+    }
+
+    private Response route(HttpExchange exchange, String method, String[] path) throws IOException {
+        String resource = path[0];
+        if (resource.equals("sessions")) {
+            if (method.equals("POST") && path.length == 1) {
+                return login(exchange);
+            }
+            if (method.equals("DELETE") && path.length == 2 && path[1].equals("current")) {
+                controller.closeSession(session(exchange));
+                return new Response(204, null);
+            }
+            throw notFound(method, path);
+        }
+
+        Session session = session(exchange);
+        Map<String, String> query = query(exchange);
+        switch (resource) {
+            case "books" -> {
+                if (method.equals("GET") && path.length == 1) {
+                    return listBooks(query);
+                }
+                if (method.equals("GET") && path.length == 2 && path[1].equals("popular")) {
+                    int limit = intParam(query, "limit", 10, MAX_PAGE);
+                    List<Book> popular = query.containsKey("days")
+                            ? controller.getMostPopularBooks(limit, intParam(query, "days", 30, 36_500))
+                            : controller.getMostPopularBooks(limit);
+                    return ok(popular.stream().map(LibraryServer::book).toList());
+                }
+                if (method.equals("GET") && path.length == 2) {
+                    return ok(book(found(controller.getBookById(path[1]), "book", path[1])));
+                }
+                if (method.equals("POST") && path.length == 1) {
+                    requireStaff(session);
+                    return addBook(body(exchange));
+                }
+            }
+            case "users" -> {
+                if (method.equals("GET") && path.length == 1) {
+                    requireStaff(session);
+                    String q = query.get("q");
+                    return ok(page(q != null ? controller.searchUsers(q) : controller.getAllUsers(),
+                            query, LibraryServer::user));
+                }
+                if (method.equals("GET") && path.length == 2) {
+                    requireSelfOrStaff(session, path[1]);
+                    return ok(user(found(controller.getUserById(path[1]), "user", path[1])));
+                }
+            }
+            case "loans" -> {
+                if (method.equals("GET") && path.length == 1) {
+                    return listLoans(session, query);
+                }
+                if (method.equals("POST") && path.length == 1) {
+                    return checkout(session, body(exchange));
+                }
+                if (method.equals("POST") && path.length == 3 && path[2].equals("return")) {
+                    Loan loan = found(controller.getLoanById(path[1]), "loan", path[1]);
+                    requireSelfOrStaff(session, loan.getUserId());
+                    Map<String, Object> json = new LinkedHashMap<>();
+                    json.put("loanId", loan.getId());
+                    json.put("penalty", controller.returnBooks(List.of(loan.getId())));
+                    return ok(json);
+                }
+            }
+            case "stats" -> {
+                if (method.equals("GET") && path.length == 1) {
+                    Map<String, Object> stats = new LinkedHashMap<>();
+                    stats.put("books", controller.getTotalBooks());
+                    stats.put("availableBooks", controller.getAvailableBooksCount());
+                    stats.put("activeLoans", controller.getActiveLoansCount());
+                    stats.put("overdueLoans", controller.getOverdueLoansCount());
+                    return ok(stats);
+                }
+            }
+            default -> {
+            }
+        }
+        throw notFound(method, path);
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", metrics.toPrometheus());
+    }
+
+    //***********************************************************************************
+    // Handlers
+
+    private Response login(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = body(exchange);
+        Session session = controller.openSession(string(body, "email"), string(body, "password"));
+        if (session == null) {
+            throw new HttpError(401, "Invalid credentials");
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("token", session.getId());
+        json.put("user", user(session.getUser()));
+        return new Response(201, json);
+    }
+
+    // Paged inside the controller, so a request never copies the catalogue
+    private Response listBooks(Map<String, String> query) {
+        Boolean available = query.containsKey("available") ? Boolean.parseBoolean(query.get("available")) : null;
+        Page<Book> books = controller.findBooks(query.get("q"), available,
+                intParam(query, "offset", 0, Integer.MAX_VALUE), intParam(query, "limit", DEFAULT_PAGE, MAX_PAGE));
+        return ok(page(books, LibraryServer::book));
+    }
+
+    private Response addBook(Map<String, Object> body) {
+        Object year = body.get("year");
+        if (!(year instanceof Long)) {
+            throw new IllegalArgumentException("year must be an integer");
+        }
+        Book book = new Book(UUID.randomUUID().toString(), string(body, "title"), string(body, "author"),
+                string(body, "genre"), ((Long) year).intValue());
+        controller.addBook(book);
+        return new Response(201, book(book));
+    }
+
+    private Response listLoans(Session session, Map<String, String> query) {
+        String userId = query.get("user");
+        if (!isStaff(session.getUser())) {
+            userId = session.getUser().getId(); // Members only ever see their own loans
+        }
+        String bookId = query.get("book");
+        String status = query.getOrDefault("status", "all");
+        if (!Set.of("active", "overdue", "all").contains(status)) {
+            throw new IllegalArgumentException("status must be active, overdue or all");
+        }
+        List<Loan> loans = userId != null ? controller.getUserLoans(userId)
+                : bookId != null ? controller.getBookLoans(bookId)
+                : status.equals("active") ? controller.getActiveLoans()
+                : status.equals("overdue") ? controller.getOverdueLoans()
+                : controller.getAllLoans();
+
+        int today = (int) LocalDate.now().toEpochDay();
+        List<Loan> filtered = loans.stream()
+                .filter(loan -> bookId == null || loan.getBookId().equals(bookId))
+                .filter(loan -> switch (status) {
+                    case "active" -> !loan.isReturned();
+                    case "overdue" -> !loan.isReturned() && loan.getDueDay() < today;
+                    default -> true;
+                })
+                .toList();
+        return ok(page(filtered, query, LibraryServer::loan));
+    }
+
+    private Response checkout(Session session, Map<String, Object> body) {
+        String userId = body.containsKey("userId") ? string(body, "userId") : session.getUser().getId();
+        requireSelfOrStaff(session, userId);
+        if (!(body.get("bookIds") instanceof List<?> ids) || ids.isEmpty()
+                || !ids.stream().allMatch(id -> id instanceof String)) {
+            throw new IllegalArgumentException("bookIds must be a non-empty array of ids");
+        }
+        List<String> bookIds = ids.stream().map(String.class::cast).toList();
+        List<Loan> loans = controller.createLoans(userId, bookIds);
+        return new Response(201, loans.stream().map(LibraryServer::loan).toList());
+    }
+
+    //***********************************************************************************
+    // Authentication and request helpers
+
+    private Session session(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new HttpError(401, "Missing bearer token");
+        }
+        Session session = controller.getSession(header.substring("Bearer ".length()).trim());
+        if (session == null) {
+            throw new HttpError(401, "Unknown or expired session");
+        }
+        return session;
+    }
+
+    private static boolean isStaff(User user) {
+        return user.getRole() == UserRole.LIBRARIAN || user.getRole() == UserRole.ADMIN;
+    }
+
+    private static void requireStaff(Session session) {
+        if (!isStaff(session.getUser())) {
+            throw new HttpError(403, "Librarian or admin role required");
+        }
+    }
+
+    private static void requireSelfOrStaff(Session session, String userId) {
+        if (!session.getUser().getId().equals(userId) && !isStaff(session.getUser())) {
+            throw new HttpError(403, "Not your account");
+        }
+    }
+
+    private static <T> T found(T entity, String kind, String id) {
+        if (entity == null) {
+            throw new HttpError(404, "No " + kind + " " + id);
+        }
+        return entity;
+    }
+
+    private static HttpError notFound(String method, String[] path) {
+        return new HttpError(404, "No route " + method + " /api/" + String.join("/", path));
+    }
+
+    // The route with ids replaced, so metrics have one series per endpoint
+    private static String template(String[] path) {
+        StringJoiner route = new StringJoiner("/");
+        for (String segment : path) {
+            route.add(ROUTE_WORDS.contains(segment) ? segment : "{id}");
+        }
+        return route.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body too large");
+        }
+        Object json = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        if (!(json instanceof Map)) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        return (Map<String, Object>) json;
+    }
+
+    private static String string(Map<String, Object> body, String name) {
+        if (!(body.get(name) instanceof String value)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return value;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue, int max) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0 || parsed > max) {
+                throw new IllegalArgumentException(name + " must be between 0 and " + max);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static <T> Map<String, Object> page(List<T> items, Map<String, String> query,
+                                                Function<T, Object> toJson) {
+        int offset = intParam(query, "offset", 0, Integer.MAX_VALUE);
+        int limit = intParam(query, "limit", DEFAULT_PAGE, MAX_PAGE);
+        int from = Math.min(offset, items.size());
+        int to = Math.min(items.size(), from + limit);
+        return page(new Page<>(items.subList(from, to), from, items.size()), toJson);
+    }
+
+    private static <T> Map<String, Object> page(Page<T> page, Function<T, Object> toJson) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("total", page.total());
+        json.put("offset", page.offset());
+        json.put("items", page.items().stream().map(toJson).toList());
+        return json;
+    }
+
+    private static Response ok(Object body) {
+        return new Response(200, body);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Map.of("error", message != null ? message : "Error " + status));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try (exchange) {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private LatencyHistogram timer(String route) {
+        return timers.computeIfAbsent(route, r -> metrics.histogram("library_http_request_seconds",
+                "HTTP API latency by route, from dispatch to the last byte written", "route", r));
+    }
+
+    //***********************************************************************************
+    // Entities as JSON. Passwords never leave the server.
+
+    private static Map<String, Object> book(Book book) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", book.getId());
+        json.put("title", book.getTitle());
+        json.put("author", book.getAuthor());
+        json.put("genre", book.getGenre());
+        json.put("year", book.getYear());
+        json.put("available", book.isAvailable());
+        return json;
+    }
+
+    private static Map<String, Object> user(User user) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", user.getId());
+        json.put("name", user.getName());
+        json.put("email", user.getEmail());
+        json.put("role", user.getRole());
+        return json;
+    }
+
+    private static Map<String, Object> loan(Loan loan) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", loan.getId());
+        json.put("userId", loan.getUserId());
+        json.put("bookId", loan.getBookId());
+        json.put("loanDate", loan.getLoanDate());
+        json.put("dueDate", loan.getDueDate());
+        json.put("returnDate", loan.getReturnDate());
+        json.put("penalty", loan.getPenalty());
+        return json;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: LibraryServer [--port=8080] [--bind=127.0.0.1]");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        InetSocketAddress address = new InetSocketAddress(options.getOrDefault("bind", "127.0.0.1"),
+                Integer.parseInt(options.getOrDefault("port", "8080")));
+
+        long start = System.nanoTime();
+        LibraryController controller = new LibraryController();
+        LibraryServer server = new LibraryServer(controller, address);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            controller.close(); // Drains pending writes
+        }, "library-shutdown"));
+        server.start();
+        System.out.printf("Serving %,d books on http://%s:%d/api/ (loaded in %.1f s)%n",
+                controller.getTotalBooks(), address.getHostString(), server.getAddress().getPort(),
+                (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,201 @@
+package com.library.server;
+
+import com.library.metrics.LatencyHistogram;
+import com.library.tasks.TaskExecutor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives a running LibraryServer the way a room full of desks would and
+// reports throughput and latency per operation.
+//
+//   java com.library.server.LoadTestClient --url=http://127.0.0.1:8080 --threads=32 --seconds=30
+//
+// Each thread logs in with its own session, then loops without think time
+// over a mix of searches (60%), book lookups (25%) and a checkout followed
+// by the return of the same book (15%). Requests during the first
+// --warmup seconds are not counted. A 409 from a checkout means another
+// thread took the book first; it is counted as a conflict, not an error.
+public class LoadTestClient {
+    private static final String[] QUERIES = {
+            "river", "night", "silent shadow", "García", "histoire", "winter garden", "Müller", "fire", "zzz"
+    };
+
+    private record Options(String url, String email, String password, int threads, int seconds, int warmup) {
+    }
+
+    private static final class Operation {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Operation(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Options options;
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(TaskExecutor.newVirtualThreadExecutor("load-test-http", 16))
+            .build();
+    private final Operation search = new Operation("search");
+    private final Operation lookup = new Operation("getBook");
+    private final Operation checkout = new Operation("checkout");
+    private final Operation giveBack = new Operation("return");
+    private volatile boolean measuring;
+
+    private LoadTestClient(Options options) {
+        this.options = options;
+    }
+
+    private void run() throws Exception {
+        String token = login();
+        List<String> bookIds = sampleBookIds(token);
+        if (bookIds.isEmpty()) {
+            throw new IllegalStateException("The server has no books to test with");
+        }
+        System.out.printf("%d threads against %s for %d s (+%d s warm-up), %,d sample books%n",
+                options.threads(), options.url(), options.seconds(), options.warmup(), bookIds.size());
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.threads());
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmup() + options.seconds());
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < options.threads(); i++) {
+            long seed = i;
+            running.add(workers.submit(() -> {
+                work(login(), bookIds, new Random(seed), end);
+                return null;
+            }));
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmup()));
+        measuring = true;
+        long measuredFrom = System.nanoTime();
+        for (Future<?> worker : running) {
+            worker.get();
+        }
+        double elapsed = (System.nanoTime() - measuredFrom) / 1e9;
+        workers.shutdown();
+        report(elapsed);
+    }
+
+    private void work(String token, List<String> bookIds, Random random, long end)
+            throws IOException, InterruptedException {
+        while (System.nanoTime() < end) {
+            int dice = random.nextInt(100);
+            if (dice < 60) {
+                String q = URLEncoder.encode(QUERIES[random.nextInt(QUERIES.length)], StandardCharsets.UTF_8);
+                call(search, token, "GET", "/api/books?limit=20&q=" + q, null);
+            } else if (dice < 85) {
+                call(lookup, token, "GET", "/api/books/" + bookIds.get(random.nextInt(bookIds.size())), null);
+            } else {
+                String bookId = bookIds.get(random.nextInt(bookIds.size()));
+                HttpResponse<String> response = call(checkout, token, "POST", "/api/loans",
+                        Json.write(Map.of("bookIds", List.of(bookId))));
+                if (response.statusCode() == 201) {
+                    Object loans = Json.parse(response.body());
+                    String loanId = (String) ((Map<?, ?>) ((List<?>) loans).get(0)).get("id");
+                    call(giveBack, token, "POST", "/api/loans/" + loanId + "/return", "{}");
+                }
+            }
+        }
+    }
+
+    private HttpResponse<String> call(Operation operation, String token, String method, String path, String body)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request(token, method, path, body),
+                HttpResponse.BodyHandlers.ofString());
+        if (measuring) {
+            operation.latency.recordSince(start);
+            if (response.statusCode() == 409) {
+                operation.conflicts.increment();
+            } else if (response.statusCode() >= 400) {
+                operation.errors.increment();
+            }
+        }
+        return response;
+    }
+
+    private HttpRequest request(String token, String method, String path, String body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(options.url() + path))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body != null ? HttpRequest.BodyPublishers.ofString(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        return request.build();
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request(null, "POST", "/api/sessions",
+                        Json.write(Map.of("email", options.email(), "password", options.password()))),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Login failed with " + response.statusCode() + ": " + response.body());
+        }
+        return (String) ((Map<?, ?>) Json.parse(response.body())).get("token");
+    }
+
+    // Up to a thousand books on the shelf, so most checkouts can succeed
+    private List<String> sampleBookIds(String token) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request(token, "GET", "/api/books?available=true&limit=1000", null),
+                HttpResponse.BodyHandlers.ofString());
+        List<String> ids = new ArrayList<>();
+        for (Object book : (List<?>) ((Map<?, ?>) Json.parse(response.body())).get("items")) {
+            ids.add((String) ((Map<?, ?>) book).get("id"));
+        }
+        return ids;
+    }
+
+    private void report(double elapsedSeconds) {
+        long total = 0;
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s %8s%n",
+                "operation", "requests", "req/s", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors");
+        for (Operation operation : List.of(search, lookup, checkout, giveBack)) {
+            LatencyHistogram.Snapshot h = operation.latency.snapshot();
+            total += h.count();
+            System.out.printf("%-10s %,10d %,10.0f %10.2f %10.2f %10.2f %10.2f %10.2f %8d%s%n",
+                    operation.name, h.count(), h.count() / elapsedSeconds, h.meanNanos() / 1e6,
+                    h.p50Nanos() / 1e6, h.p95Nanos() / 1e6, h.p99Nanos() / 1e6, h.maxNanos() / 1e6,
+                    operation.errors.sum(),
+                    operation.conflicts.sum() > 0 ? "  (" + operation.conflicts.sum() + " conflicts)" : "");
+        }
+        System.out.printf("total      %,10d %,10.0f%n", total, total / elapsedSeconds);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> flags = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: LoadTestClient [--url=http://127.0.0.1:8080] [--email=admin@library.com]"
+                        + " [--password=admin123] [--threads=32] [--seconds=30] [--warmup=5]");
+                System.exit(1);
+            }
+            flags.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        Options options = new Options(flags.getOrDefault("url", "http://127.0.0.1:8080"),
+                flags.getOrDefault("email", "admin@library.com"),
+                flags.getOrDefault("password", "admin123"),
+                Integer.parseInt(flags.getOrDefault("threads", "32")),
+                Integer.parseInt(flags.getOrDefault("seconds", "30")),
+                Integer.parseInt(flags.getOrDefault("warmup", "5")));
+        new LoadTestClient(options).run();
+        System.exit(0); // The HTTP client's threads would otherwise keep the JVM alive for a while
+    }
+}
@@ -0,0 +1,186 @@
+package com.library.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// One submitted task: its progress, its outcome and the handle to cancel it.
+//
+// Tasks are structured: a task forked from another belongs to it. When the
+// parent's body ends, by failing, being cancelled or simply returning, the
+// parent waits for its subtasks before it completes, and a failed or
+// cancelled parent cancels the subtasks still running first. No subtask
+// outlives the task that started it.
+public final class BackgroundTask<T> implements TaskContext {
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final TaskExecutor executor;
+    private final String name;
+    private final Task<T> body;
+    private final BackgroundTask<?> parent;
+    private final long sequence;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final List<BackgroundTask<?>> children = new ArrayList<>();
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled;
+    private volatile int percent = -1;
+    private volatile String message = "";
+    private Thread runner; // Guarded by this, so a late cancel cannot interrupt the thread's next task
+
+    BackgroundTask(TaskExecutor executor, String name, Task<T> body, BackgroundTask<?> parent, long sequence) {
+        this.executor = executor;
+        this.name = name;
+        this.body = body;
+        this.parent = parent;
+        this.sequence = sequence;
+    }
+
+    void run() {
+        long start = System.nanoTime();
+        T value = null;
+        Throwable failure = null;
+        synchronized (this) {
+            runner = Thread.currentThread();
+        }
+        try {
+            checkCancelled();
+            state = State.RUNNING;
+            executor.fireChanged(this);
+            value = body.run(this);
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            Thread.interrupted(); // A cancel that arrived as the body ended
+        }
+
+        if (failure != null || cancelled) {
+            cancelChildren();
+        }
+        for (BackgroundTask<?> child : childrenSnapshot()) {
+            child.result.handle((r, e) -> null).join();
+        }
+        complete(value, failure, start);
+    }
+
+    // Leaves the active list before the outcome is visible, so whoever
+    // waits on the task never still finds it running
+    private void complete(T value, Throwable failure, long start) {
+        executor.retire(this);
+        if (failure == null) {
+            state = State.SUCCEEDED;
+            result.complete(value);
+        } else if (cancelled || failure instanceof CancellationException) {
+            state = State.CANCELLED;
+            result.completeExceptionally(failure instanceof CancellationException
+                    ? failure : new CancellationException(name + " was cancelled"));
+        } else {
+            state = State.FAILED;
+            result.completeExceptionally(failure);
+        }
+        executor.finished(this, System.nanoTime() - start);
+    }
+
+    // Stops the task at its next cancellation check or blocking call, and
+    // every subtask with it. A task that has not started yet never will.
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+        cancelChildren();
+        executor.fireChanged(this);
+    }
+
+    private void cancelChildren() {
+        childrenSnapshot().forEach(BackgroundTask::cancel);
+    }
+
+    private List<BackgroundTask<?>> childrenSnapshot() {
+        synchronized (children) {
+            return new ArrayList<>(children);
+        }
+    }
+
+    //***********************************************************************************
+    // TaskContext, for the body
+
+    @Override
+    public void progress(int percent, String message) {
+        this.percent = Math.max(-1, Math.min(100, percent));
+        this.message = message != null ? message : "";
+        executor.fireChanged(this);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException(name + " was cancelled");
+        }
+    }
+
+    @Override
+    public <R> BackgroundTask<R> fork(String name, Task<R> task) {
+        BackgroundTask<R> child = executor.create(name, task, this);
+        synchronized (children) {
+            children.add(child);
+        }
+        if (cancelled) {
+            child.cancelled = true;
+        }
+        executor.start(child);
+        return child;
+    }
+
+    //***********************************************************************************
+    // Handle, for whoever submitted it
+
+    public String getName() {
+        return name;
+    }
+
+    public BackgroundTask<?> getParent() {
+        return parent;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // Waits for the outcome; a cancelled task throws CancellationException
+    public T get() throws InterruptedException, ExecutionException {
+        return result.get();
+    }
+
+    // Completes with the task, e.g. to update the screen once it is done
+    public CompletableFuture<T> future() {
+        return result.copy();
+    }
+}
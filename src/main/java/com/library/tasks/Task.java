@@ -0,0 +1,8 @@
+package com.library.tasks;
+
+// The body of a background task. It runs on a task thread and reports
+// progress, checks for cancellation and forks subtasks through its context.
+@FunctionalInterface
+public interface Task<T> {
+    T run(TaskContext context) throws Exception;
+}
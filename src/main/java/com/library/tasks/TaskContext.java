@@ -0,0 +1,18 @@
+package com.library.tasks;
+
+// What a running task sees of itself. Long loops call checkCancelled()
+// between steps; blocking calls are also interrupted on cancellation.
+public interface TaskContext {
+
+    // percent is 0-100, or -1 when the amount of work is unknown
+    void progress(int percent, String message);
+
+    boolean isCancelled();
+
+    // Throws CancellationException once the task has been cancelled
+    void checkCancelled();
+
+    // Starts a subtask owned by this one: cancelling this task cancels it,
+    // and this task does not complete before it has
+    <R> BackgroundTask<R> fork(String name, Task<R> task);
+}
@@ -0,0 +1,125 @@
+package com.library.tasks;
+
+import com.library.metrics.Counter;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// The one place background work runs: loading, imports, backups, password
+// migration. Each task gets its own virtual thread on JDK 21+, so a task
+// blocked on the disk or a lock costs nothing; on JDK 17 a pool of daemon
+// platform threads stands in. Listeners hear about every start, progress
+// report and completion, e.g. to show running tasks on screen.
+public final class TaskExecutor {
+    private static final int FALLBACK_THREADS = 64; // Parents wait for their subtasks, so keep this generous
+    private static final TaskExecutor DEFAULT = new TaskExecutor(newVirtualThreadExecutor("library-task", FALLBACK_THREADS));
+
+    private final ExecutorService threads;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<BackgroundTask<?>> active = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<BackgroundTask<?>>> listeners = new CopyOnWriteArrayList<>();
+
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<BackgroundTask.State, Counter> outcomes = new ConcurrentHashMap<>();
+
+    public TaskExecutor(ExecutorService threads) {
+        this.threads = threads;
+        metrics.gauge("library_tasks_active", "Background tasks queued or running", active::size);
+    }
+
+    public static TaskExecutor getDefault() {
+        return DEFAULT;
+    }
+
+    // A virtual thread per task when the JDK has them (21+), looked up
+    // reflectively because the build targets 17; otherwise at most
+    // maxPlatformThreads daemon threads, the rest queued
+    public static ExecutorService newVirtualThreadExecutor(String name, int maxPlatformThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxPlatformThreads, maxPlatformThreads,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    public <T> BackgroundTask<T> submit(String name, Task<T> task) {
+        BackgroundTask<T> submitted = create(name, task, null);
+        start(submitted);
+        return submitted;
+    }
+
+    <T> BackgroundTask<T> create(String name, Task<T> task, BackgroundTask<?> parent) {
+        return new BackgroundTask<>(this, name, task, parent, sequence.incrementAndGet());
+    }
+
+    void start(BackgroundTask<?> task) {
+        active.add(task);
+        fireChanged(task);
+        try {
+            threads.execute(task::run);
+        } catch (RejectedExecutionException e) {
+            task.cancel();
+            task.run(); // Completes it as cancelled on this thread
+        }
+    }
+
+    void retire(BackgroundTask<?> task) {
+        active.remove(task);
+    }
+
+    void finished(BackgroundTask<?> task, long elapsedNanos) {
+        timers.computeIfAbsent(task.getName(), name -> metrics.histogram("library_task_seconds",
+                "Run time of background tasks", "task", name)).record(elapsedNanos);
+        outcomes.computeIfAbsent(task.getState(), state -> metrics.counter("library_tasks_total",
+                "Finished background tasks by outcome", "result", state.name().toLowerCase())).increment();
+        fireChanged(task);
+    }
+
+    // Tasks queued or running, oldest first
+    public List<BackgroundTask<?>> getActiveTasks() {
+        return active.stream()
+                .sorted(Comparator.comparingLong(BackgroundTask::getSequence))
+                .toList();
+    }
+
+    public void cancelAll() {
+        active.forEach(BackgroundTask::cancel);
+    }
+
+    // Notified on the task's thread (or the submitting one) whenever a task
+    // starts, reports progress, is cancelled or completes
+    public void addListener(Consumer<BackgroundTask<?>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<BackgroundTask<?>> listener) {
+        listeners.remove(listener);
+    }
+
+    void fireChanged(BackgroundTask<?> task) {
+        for (Consumer<BackgroundTask<?>> listener : listeners) {
+            try {
+                listener.accept(task);
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // A broken listener must not break the task
+            }
+        }
+    }
+}
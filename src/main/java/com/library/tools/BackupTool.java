@@ -0,0 +1,88 @@
+package com.library.tools;
+
+import com.library.dao.BackupArchive;
+import com.library.dao.CSVHandler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Lists, takes and restores backups of a data directory while the
+// application is not running (it backs itself up from File > Back Up Data).
+//
+//   java com.library.tools.BackupTool list
+//   java com.library.tools.BackupTool backup
+//   java com.library.tools.BackupTool restore --at=2026-03-01T18:00
+//
+// --at is the point in time to go back to: an instant (2026-03-01T17:00:00Z),
+// a local date-time, or a date, meaning the end of that day. The newest
+// backup taken at or before it is restored; without --at, the latest one.
+// The directory is -Dlibrary.data.dir as for the application, or --data.
+public class BackupTool {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        String command = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (command == null && !arg.startsWith("--")) {
+                command = arg;
+            } else {
+                command = null;
+                break;
+            }
+        }
+        if (command == null || !(command.equals("list") || command.equals("backup") || command.equals("restore"))) {
+            System.err.println("Usage: BackupTool list|backup|restore [--at=<instant, date-time or date>]"
+                    + " [--data=<dir>]");
+            System.exit(1);
+        }
+
+        String dataDir = options.getOrDefault("data", System.getProperty("library.data.dir"));
+        CSVHandler csvHandler = dataDir != null ? new CSVHandler(dataDir) : new CSVHandler();
+        try {
+            switch (command) {
+                case "list" -> {
+                    for (BackupArchive.Manifest manifest : csvHandler.listBackups()) {
+                        System.out.printf("%s  %,14d bytes  %,12d stored  %s%n", manifest.created(),
+                                manifest.totalBytes(), manifest.storedBytes(), manifest.file().getFileName());
+                    }
+                }
+                case "backup" -> {
+                    long start = System.nanoTime();
+                    Path manifest = csvHandler.backupData();
+                    System.out.printf("Backed up to %s in %.1f s%n", manifest, (System.nanoTime() - start) / 1e9);
+                }
+                case "restore" -> {
+                    Instant at = options.containsKey("at") ? parsePointInTime(options.get("at")) : Instant.now();
+                    long start = System.nanoTime();
+                    Path manifest = csvHandler.restoreBackup(at);
+                    System.out.printf("Restored %s in %.1f s%n", manifest, (System.nanoTime() - start) / 1e9);
+                }
+                default -> throw new IllegalStateException(command);
+            }
+        } finally {
+            csvHandler.close();
+        }
+    }
+
+    private static Instant parsePointInTime(String text) {
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException notAnInstant) {
+            try {
+                return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant();
+            } catch (DateTimeParseException notADateTime) {
+                return LocalDate.parse(text).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusMillis(1);
+            }
+        }
+    }
+}
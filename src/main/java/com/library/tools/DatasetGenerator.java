@@ -0,0 +1,269 @@
+package com.library.tools;
+
+import com.library.dao.CsvBatchWriter;
+import com.library.model.*;
+import com.library.security.PasswordHasher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+// Generates a realistic library at any scale in the CSVHandler file formats,
+// for benchmarks and load tests. Open the result with -Dlibrary.data.dir=<dir>.
+//
+//   java com.library.tools.DatasetGenerator --out=data/large --books=1000000 --loans=5000000
+//
+// Loans pick their book from a Zipf distribution over a shuffled popularity
+// ranking, so a few titles get most of the traffic. A book has one copy:
+// a loan only becomes active if the book is on the shelf, and a share of
+// the active loans is overdue. Titles and names mix scripts and include
+// commas and quotes to exercise CSV escaping. Everything is written as it
+// is generated, so millions of loans need no more memory than the book
+// ranking. The same seed always produces the same data (password salts aside).
+public class DatasetGenerator {
+    public record Spec(int books, int users, int loans, double activeRatio, double overdueRatio,
+                       double zipfExponent, int historyDays, long seed) {
+
+        public static Spec of(int books, int users, int loans) {
+            return new Spec(books, users, loans, 0.05, 0.2, 1.07, 730, 42);
+        }
+    }
+
+    public record Summary(long books, long users, long loans, long activeLoans, long overdueLoans,
+                          long elapsedNanos) {
+    }
+
+    private static final String[] TITLE_WORDS = {
+            "night", "river", "garden", "history", "stone", "winter", "silent", "empire",
+            "shadow", "letters", "ocean", "machine", "daughter", "secret", "city", "fire",
+            "café", "mémoire", "été", "forêt", "naïve", "Straße", "Größe", "niño", "señor",
+            "Москва", "зима", "東京", "夜", "物語", "مكتبة", "Ελλάδα", "łąka", "ðrá", "søster"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Anna", "José", "Zoë", "Søren", "Łukasz", "Chloé", "Mehmet", "Aiko", "Olga", "Fatima",
+            "John", "Mary", "Nguyễn", "Björn", "Inès", "Иван", "明", "Ahmed", "Priya", "Seán"
+    };
+    private static final String[] LAST_NAMES = {
+            "Smith", "García", "Müller", "Dubois", "Kowalski", "Tanaka", "Ivanova", "Haddad",
+            "O'Brien", "Rossi", "Nakamura", "Øster", "Petrović", "Yılmaz", "Silva", "Li", "Шевченко"
+    };
+    private static final String[] GENRES = {
+            "Fiction", "Mystery", "Science", "History", "Poetry", "Fantasy", "Biography",
+            "Travel", "Children", "Philosophy", "Art", "Science Fiction"
+    };
+    private static final int LOAN_DAYS = 14;
+
+    private final Spec spec;
+
+    public DatasetGenerator(Spec spec) {
+        this.spec = spec;
+    }
+
+    public Summary generate(Path dir) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        BitSet checkedOut = new BitSet(spec.books());
+        long[] loanCounts = writeLoans(dir.resolve("loans.csv"), checkedOut);
+        writeBooks(dir.resolve("books.csv"), checkedOut);
+        writeUsers(dir.resolve("users.csv"));
+        return new Summary(spec.books(), spec.users(), spec.loans(), loanCounts[0], loanCounts[1],
+                System.nanoTime() - start);
+    }
+
+    // Stable, UUID-shaped ids derived from the index, so loans can refer to
+    // books and users without keeping their ids in memory
+    private String bookId(int index) {
+        return new UUID(spec.seed() ^ 0x626f6f6bL, index).toString();
+    }
+
+    private String userId(int index) {
+        return new UUID(spec.seed() ^ 0x75736572L, index).toString();
+    }
+
+    private long[] writeLoans(Path file, BitSet checkedOut) throws IOException {
+        Random random = new Random(spec.seed());
+        Zipf popularity = new Zipf(spec.books(), spec.zipfExponent());
+        int[] bookByRank = shuffledIndexes(spec.books(), random);
+        LocalDate today = LocalDate.now();
+        long active = 0;
+        long overdue = 0;
+
+        try (CsvBatchWriter<Loan> writer = CsvBatchWriter.loans(file)) {
+            for (int i = 0; i < spec.loans(); i++) {
+                int book = bookByRank[popularity.sample(random)];
+                int user = random.nextInt(spec.users());
+                String loanId = new UUID(random.nextLong(), random.nextLong()).toString();
+
+                Loan loan;
+                if (random.nextDouble() < spec.activeRatio() && !checkedOut.get(book)) {
+                    checkedOut.set(book);
+                    active++;
+                    boolean late = random.nextDouble() < spec.overdueRatio();
+                    LocalDate loanDate = late
+                            ? today.minusDays(LOAN_DAYS + 1 + random.nextInt(60))
+                            : today.minusDays(random.nextInt(LOAN_DAYS));
+                    if (late) {
+                        overdue++;
+                    }
+                    loan = new Loan(loanId, userId(user), bookId(book), loanDate, loanDate.plusDays(LOAN_DAYS));
+                } else {
+                    LocalDate loanDate = today.minusDays(1 + random.nextInt(spec.historyDays()));
+                    LocalDate dueDate = loanDate.plusDays(LOAN_DAYS);
+                    // Most returns are on time; about one in ten comes back up to a month late
+                    int kept = random.nextInt(10) == 0
+                            ? LOAN_DAYS + 1 + random.nextInt(30)
+                            : 1 + random.nextInt(LOAN_DAYS);
+                    LocalDate returnDate = loanDate.plusDays(kept);
+                    if (returnDate.isAfter(today)) {
+                        returnDate = today;
+                    }
+                    loan = new Loan(loanId, userId(user), bookId(book), loanDate, dueDate);
+                    loan.setReturnDate(returnDate);
+                    if (returnDate.isAfter(dueDate)) {
+                        loan.setPenalty((returnDate.toEpochDay() - dueDate.toEpochDay()) * 1.0);
+                    }
+                }
+                writer.write(loan);
+            }
+        }
+        return new long[]{active, overdue};
+    }
+
+    private void writeBooks(Path file, BitSet checkedOut) throws IOException {
+        Random random = new Random(spec.seed() + 1);
+        Map<Integer, String> authors = new HashMap<>();
+        int authorCount = Math.max(1, spec.books() / 8);
+        try (CsvBatchWriter<Book> writer = CsvBatchWriter.books(file)) {
+            for (int i = 0; i < spec.books(); i++) {
+                int author = random.nextInt(authorCount);
+                Book book = new Book(bookId(i), title(random),
+                        authors.computeIfAbsent(author, a -> personName(new Random(spec.seed() ^ a))),
+                        GENRES[random.nextInt(GENRES.length)], 1850 + random.nextInt(175));
+                book.setAvailable(!checkedOut.get(i));
+                writer.write(book);
+            }
+        }
+    }
+
+    // The first user is the usual admin account (admin123) so the dataset can
+    // be logged into. Every other user's password is "password": hashing a
+    // distinct one per user would take longer than generating everything else.
+    private void writeUsers(Path file) throws IOException {
+        Random random = new Random(spec.seed() + 2);
+        String sharedPassword = PasswordHasher.hash("password");
+        try (CsvBatchWriter<User> writer = CsvBatchWriter.users(file)) {
+            writer.write(new User(userId(0), "Admin User", "admin@library.com",
+                    PasswordHasher.hash("admin123"), UserRole.ADMIN));
+            for (int i = 1; i < spec.users(); i++) {
+                UserRole role = random.nextInt(100) == 0 ? UserRole.LIBRARIAN : UserRole.MEMBER;
+                writer.write(new User(userId(i), personName(random), "user" + i + "@example.org",
+                        sharedPassword, role));
+            }
+        }
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder(capitalize(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]));
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            title.append(' ').append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+        }
+        switch (random.nextInt(20)) {
+            case 0 -> title.append(", Volume ").append(1 + random.nextInt(5));
+            case 1 -> title.append(": \"").append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]).append('"');
+            default -> {
+            }
+        }
+        return title.toString();
+    }
+
+    private static String personName(Random random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    private static String capitalize(String word) {
+        return word.substring(0, 1).toUpperCase() + word.substring(1);
+    }
+
+    private static int[] shuffledIndexes(int n, Random random) {
+        int[] indexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = swap;
+        }
+        return indexes;
+    }
+
+    // Inverse-CDF sampling of ranks 0..n-1 with P(rank k) proportional to 1/(k+1)^s
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            double u = random.nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: DatasetGenerator --out=<dir> [--books=N] [--users=N] [--loans=N]"
+                        + " [--active=0.05] [--overdue=0.2] [--zipf=1.07] [--days=730] [--seed=42]");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        int books = Integer.parseInt(options.getOrDefault("books", "100000"));
+        Spec defaults = Spec.of(books, Math.max(1, books / 10), books * 3);
+        Spec spec = new Spec(books,
+                Integer.parseInt(options.getOrDefault("users", String.valueOf(defaults.users()))),
+                Integer.parseInt(options.getOrDefault("loans", String.valueOf(defaults.loans()))),
+                Double.parseDouble(options.getOrDefault("active", String.valueOf(defaults.activeRatio()))),
+                Double.parseDouble(options.getOrDefault("overdue", String.valueOf(defaults.overdueRatio()))),
+                Double.parseDouble(options.getOrDefault("zipf", String.valueOf(defaults.zipfExponent()))),
+                Integer.parseInt(options.getOrDefault("days", String.valueOf(defaults.historyDays()))),
+                Long.parseLong(options.getOrDefault("seed", String.valueOf(defaults.seed()))));
+        Path out = Paths.get(options.getOrDefault("out", "data/generated"));
+
+        Summary summary = new DatasetGenerator(spec).generate(out);
+        System.out.printf("Wrote %,d books, %,d users and %,d loans (%,d active, %,d overdue) to %s in %.1f s%n",
+                summary.books(), summary.users(), summary.loans(), summary.activeLoans(),
+                summary.overdueLoans(), out, summary.elapsedNanos() / 1e9);
+    }
+}
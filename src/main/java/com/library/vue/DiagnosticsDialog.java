@@ -0,0 +1,95 @@
+package com.library.vue;
+
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.MetricsRegistry;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.Collectors;
+
+// Admin view of the metrics registry: every counter, gauge and latency
+// histogram, refreshed every second, with an export to a JSON or
+// Prometheus text file
+class DiagnosticsDialog extends JDialog {
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final EntityTableModel<MetricsRegistry.Sample> tableModel;
+    private final Timer refreshTimer;
+
+    DiagnosticsDialog(Frame owner) {
+        super(owner, "Diagnostics", false);
+        tableModel = new EntityTableModel<>(metrics.samples(),
+                "Metric", "Labels", "Count / Value", "Mean (ms)", "p50 (ms)", "p95 (ms)", "p99 (ms)", "Max (ms)") {
+            @Override
+            protected Object valueAt(MetricsRegistry.Sample sample, int column) {
+                LatencyHistogram.Snapshot h = sample.histogram();
+                return switch (column) {
+                    case 0 -> sample.name();
+                    case 1 -> sample.labels().entrySet().stream()
+                            .map(label -> label.getKey() + "=" + label.getValue())
+                            .collect(Collectors.joining(", "));
+                    case 2 -> h != null ? String.format("%,d", h.count()) : formatValue(sample.value());
+                    case 3 -> h != null ? millis(h.meanNanos()) : "";
+                    case 4 -> h != null ? millis(h.p50Nanos()) : "";
+                    case 5 -> h != null ? millis(h.p95Nanos()) : "";
+                    case 6 -> h != null ? millis(h.p99Nanos()) : "";
+                    case 7 -> h != null ? millis(h.maxNanos()) : "";
+                    default -> "";
+                };
+            }
+        };
+
+        JTable table = new JTable(tableModel);
+        table.getColumnModel().getColumn(0).setPreferredWidth(220);
+        table.getColumnModel().getColumn(1).setPreferredWidth(160);
+
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> export());
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(exportButton);
+        buttons.add(closeButton);
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(buttons, BorderLayout.SOUTH);
+        setSize(900, 500);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        refreshTimer = new Timer(1000, e -> tableModel.showRows(metrics.samples()));
+        refreshTimer.start();
+    }
+
+    private void export() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export Metrics (.json for JSON, anything else for Prometheus text)");
+        chooser.setSelectedFile(new File("library-metrics.prom"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            metrics.writeTo(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Error exporting metrics: " + e.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private static String formatValue(double value) {
+        return value == Math.rint(value) ? String.format("%,d", (long) value) : String.format("%.3f", value);
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+}
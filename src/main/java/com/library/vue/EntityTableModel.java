@@ -0,0 +1,100 @@
+package com.library.vue;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+// Table model that reads cells straight from a list of entities instead of
+// copying every record into a Vector. It normally shows the controller's
+// live view (row = index slot, which a changed entity's copy takes over)
+// and fires per-row events after a change; search results are shown by
+// swapping in the result list, and re-queried after a change.
+abstract class EntityTableModel<T> extends AbstractTableModel {
+    private final String[] columns;
+    private final List<T> liveRows;
+    private List<T> rows;
+    private int reportedRows;
+
+    EntityTableModel(List<T> liveRows, String... columns) {
+        this.columns = columns;
+        this.liveRows = liveRows;
+        this.rows = liveRows;
+        this.reportedRows = liveRows.size();
+    }
+
+    protected abstract Object valueAt(T entity, int column);
+
+    void showRows(List<T> rows) {
+        this.rows = rows;
+        reportedRows = rows.size();
+        fireTableDataChanged();
+    }
+
+    void showLiveRows() {
+        showRows(liveRows);
+    }
+
+    boolean isLive() {
+        return rows == liveRows;
+    }
+
+    T getRow(int row) {
+        return rows.get(row);
+    }
+
+    // Entities were appended to the end of the rows
+    void rowsInserted() {
+        int size = rows.size();
+        if (size > reportedRows) {
+            fireTableRowsInserted(reportedRows, size - 1);
+        }
+        reportedRows = size;
+    }
+
+    void rowUpdated(int row) {
+        fireTableRowsUpdated(row, row);
+    }
+
+    // Entities anywhere in the rows may have been replaced
+    void allRowsUpdated() {
+        if (reportedRows > 0) {
+            fireTableRowsUpdated(0, reportedRows - 1);
+        }
+    }
+
+    // The entity at row was removed and the last entity moved into its slot
+    void rowRemoved(int row) {
+        int size = rows.size();
+        if (row < size) {
+            fireTableRowsUpdated(row, row);
+        }
+        if (size < reportedRows) {
+            fireTableRowsDeleted(size, reportedRows - 1);
+        }
+        reportedRows = size;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return valueAt(rows.get(row), column);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+}
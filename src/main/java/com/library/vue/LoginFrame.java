@@ -8,11 +8,13 @@ import javax.swing.border.AbstractBorder;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.*;
+import java.util.concurrent.ExecutionException;
 
 public class LoginFrame extends JFrame {
     private LibraryController controller;
     private JTextField emailField;
     private JPasswordField passwordField;
+    private JButton loginButton;
     private final Color PRIMARY_COLOR = new Color(255, 89, 0);  // Bright Orange
     private final Color SECONDARY_COLOR = new Color(42, 42, 42);  // Dark Gray
     private final Color BACKGROUND_COLOR = Color.WHITE;
@@ -169,7 +171,7 @@ public class LoginFrame extends JFrame {
         panel.add(passwordField, gbc);
 
         // Login Button
-        JButton loginButton = createStyledButton("LOGIN");
+        loginButton = createStyledButton("LOGIN");
         loginButton.addActionListener(e -> login());
         panel.add(loginButton, gbc);
 
@@ -280,13 +282,34 @@ public class LoginFrame extends JFrame {
     private void login() {
         String email = emailField.getText();
         String password = new String(passwordField.getPassword());
+        loginButton.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
-        if (controller.login(email, password)) {
-            new MainFrame(controller).setVisible(true);
-            dispose();
-        } else {
-            showError("Invalid credentials!");
-        }
+        // Checking the password hash takes a noticeable fraction of a second, so
+        // it runs off the event thread; the library data is already loaded
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return controller.login(email, password);
+            }
+
+            @Override
+            protected void done() {
+                loginButton.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    if (get()) {
+                        new MainFrame(controller).setVisible(true);
+                        dispose();
+                    } else {
+                        showError("Invalid credentials!");
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    showError("Login failed!");
+                }
+            }
+        }.execute();
     }
 
     private void showError(String message) {
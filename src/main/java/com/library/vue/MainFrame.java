@@ -1,13 +1,25 @@
 package com.library.vue;
 
+import com.library.controller.ImportResult;
 import com.library.controller.LibraryController;
+import com.library.controller.LibraryStatistics;
 import com.library.model.*;
+import com.library.security.PasswordHasher;
+import com.library.tasks.BackgroundTask;
+import com.library.tasks.TaskExecutor;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class MainFrame extends JFrame {
 
@@ -38,6 +50,92 @@ public class MainFrame extends JFrame {
 
         // Add tabbedPane to frame
         add(tabbedPane);
+        add(createStatusBar(), BorderLayout.SOUTH);
+    }
+
+    private final JLabel pendingWritesLabel = new JLabel();
+    private final AtomicBoolean pendingWritesRefreshPending = new AtomicBoolean();
+    private final Runnable persistenceListener = this::schedulePendingWritesRefresh;
+
+    private final TaskExecutor tasks = TaskExecutor.getDefault();
+    private final JLabel taskLabel = new JLabel();
+    private final JProgressBar taskProgress = new JProgressBar(0, 100);
+    private final JButton cancelTaskButton = new JButton("Cancel");
+    private final AtomicBoolean tasksRefreshPending = new AtomicBoolean();
+    private final Consumer<BackgroundTask<?>> taskListener = task -> scheduleTasksRefresh();
+    private BackgroundTask<?> shownTask;
+
+    // Saving happens in the background; this shows whether it has caught up,
+    // and which background task is running
+    private JPanel createStatusBar() {
+        JPanel statusBar = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        statusBar.setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0, new Color(200, 200, 200)));
+        taskProgress.setPreferredSize(new Dimension(120, 14));
+        cancelTaskButton.addActionListener(e -> {
+            if (shownTask != null) {
+                shownTask.cancel();
+            }
+        });
+        statusBar.add(taskLabel);
+        statusBar.add(taskProgress);
+        statusBar.add(cancelTaskButton);
+        statusBar.add(Box.createHorizontalStrut(20));
+        statusBar.add(pendingWritesLabel);
+        controller.addPersistenceListener(persistenceListener);
+        tasks.addListener(taskListener);
+        refreshPendingWrites();
+        refreshTasks();
+        return statusBar;
+    }
+
+    private void scheduleTasksRefresh() {
+        if (tasksRefreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                tasksRefreshPending.set(false);
+                refreshTasks();
+            });
+        }
+    }
+
+    // Shows the oldest running top-level task; its subtasks are part of it
+    private void refreshTasks() {
+        java.util.List<BackgroundTask<?>> running = tasks.getActiveTasks().stream()
+                .filter(task -> task.getParent() == null)
+                .toList();
+        shownTask = running.isEmpty() ? null : running.get(0);
+        boolean busy = shownTask != null;
+        taskLabel.setVisible(busy);
+        taskProgress.setVisible(busy);
+        cancelTaskButton.setVisible(busy);
+        if (!busy) {
+            return;
+        }
+        String text = shownTask.getName() + (shownTask.getMessage().isEmpty() ? "" : ": " + shownTask.getMessage());
+        taskLabel.setText(running.size() > 1 ? text + " (+" + (running.size() - 1) + " more)" : text);
+        taskProgress.setIndeterminate(shownTask.getPercent() < 0);
+        taskProgress.setValue(Math.max(0, shownTask.getPercent()));
+        cancelTaskButton.setEnabled(!shownTask.isCancelled());
+    }
+
+    private void schedulePendingWritesRefresh() {
+        if (pendingWritesRefreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                pendingWritesRefreshPending.set(false);
+                refreshPendingWrites();
+            });
+        }
+    }
+
+    private void refreshPendingWrites() {
+        int pending = controller.getPendingWrites();
+        RuntimeException failure = controller.getPersistenceFailure();
+        if (failure != null) {
+            pendingWritesLabel.setText("Not saved: " + pending + " change(s), retrying (" + failure.getMessage() + ")");
+            pendingWritesLabel.setForeground(Color.RED);
+        } else {
+            pendingWritesLabel.setText(pending == 0 ? "All changes saved" : "Saving " + pending + " change(s)...");
+            pendingWritesLabel.setForeground(UIManager.getColor("Label.foreground"));
+        }
     }
 
     private JMenuBar createMenuBar() {
@@ -45,6 +143,22 @@ public class MainFrame extends JFrame {
 
         // File Menu
         JMenu fileMenu = new JMenu("File");
+        JMenu importMenu = new JMenu("Import");
+        JMenuItem importBooksItem = new JMenuItem("Books...");
+        importBooksItem.addActionListener(e -> importFile("Books", controller::importBooks));
+        JMenuItem importUsersItem = new JMenuItem("Users...");
+        importUsersItem.addActionListener(e -> importFile("Users", controller::importUsers));
+        JMenuItem importLoansItem = new JMenuItem("Loans...");
+        importLoansItem.addActionListener(e -> importFile("Loans", controller::importLoans));
+        importMenu.add(importBooksItem);
+        importMenu.add(importUsersItem);
+        importMenu.add(importLoansItem);
+        fileMenu.add(importMenu);
+        JMenuItem backupItem = new JMenuItem("Back Up Data");
+        backupItem.addActionListener(e -> backUp());
+        fileMenu.add(backupItem);
+        fileMenu.addSeparator();
+
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.addActionListener(e -> System.exit(0));
         fileMenu.add(exitItem);
@@ -58,12 +172,21 @@ public class MainFrame extends JFrame {
         menuBar.add(fileMenu);
         menuBar.add(helpMenu);
 
+        // Tools Menu, for administrators only
+        User user = controller.getCurrentUser();
+        JMenu toolsMenu = new JMenu("Tools");
+        JMenuItem diagnosticsItem = new JMenuItem("Diagnostics...");
+        diagnosticsItem.addActionListener(e -> new DiagnosticsDialog(this).setVisible(true));
+        toolsMenu.add(diagnosticsItem);
+        toolsMenu.setVisible(user != null && user.getRole() == UserRole.ADMIN);
+
         JMenu logoutMenu = new JMenu("Account");
         JMenuItem logoutItem = new JMenuItem("Logout");
         logoutItem.addActionListener(e -> handleLogout());
         logoutMenu.add(logoutItem);
 
         menuBar.add(fileMenu);
+        menuBar.add(toolsMenu);
         menuBar.add(helpMenu);
         menuBar.add(Box.createHorizontalGlue()); // Add glue to push logout to the right
         menuBar.add(logoutMenu);
@@ -71,6 +194,114 @@ public class MainFrame extends JFrame {
         return menuBar;
     }
 
+    private interface Importer {
+        ImportResult run(Path file, Consumer<ImportResult> progress) throws IOException;
+    }
+
+    // Runs a bulk import as a background task behind a modal progress dialog.
+    // Until it is done the tables show a copy of the data, so the event thread
+    // never reads the live views while the importer is growing them.
+    private void importFile(String what, Importer importer) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import " + what + " (CSV)");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+
+        bookTableModel.showRows(controller.getAllBooks());
+        userTableModel.showRows(controller.getAllUsers());
+        loanTableModel.showRows(controller.getAllLoans());
+
+        JDialog dialog = new JDialog(this, "Importing " + what, true);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        JLabel statusLabel = new JLabel("Reading " + file.getFileName() + "...");
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(progressBar, BorderLayout.NORTH);
+        panel.add(statusLabel, BorderLayout.CENTER);
+        dialog.add(panel);
+        dialog.setSize(420, 150);
+        dialog.setLocationRelativeTo(this);
+
+        BackgroundTask<ImportResult> task = tasks.submit("Import " + what.toLowerCase(),
+                context -> importer.run(file, result -> {
+                    context.progress(result.percentDone(), String.format("%,d records, %,.0f records/s",
+                            result.processed(), result.recordsPerSecond()));
+                    context.checkCancelled(); // Stops between batches; those already imported stay
+                }));
+        Consumer<BackgroundTask<?>> progressListener = changed -> {
+            if (changed == task) {
+                SwingUtilities.invokeLater(() -> {
+                    progressBar.setValue(Math.max(0, task.getPercent()));
+                    if (!task.getMessage().isEmpty()) {
+                        statusLabel.setText(task.getMessage());
+                    }
+                });
+            }
+        };
+        tasks.addListener(progressListener);
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            cancelButton.setEnabled(false);
+            task.cancel();
+        });
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(cancelButton);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        task.future().whenComplete((result, failure) -> SwingUtilities.invokeLater(() -> {
+            tasks.removeListener(progressListener);
+            dialog.dispose();
+            bookSearch.searchNow();
+            userSearch.searchNow();
+            loanSearch.searchNow();
+            if (failure == null) {
+                JOptionPane.showMessageDialog(MainFrame.this,
+                        String.format("Imported %,d, skipped %,d duplicate(s), rejected %,d invalid row(s)%n"
+                                        + "in %.1f s (%,.0f records/s)",
+                                result.imported(), result.duplicates(), result.invalid(),
+                                result.elapsedNanos() / 1e9, result.recordsPerSecond()),
+                        "Import Complete",
+                        JOptionPane.INFORMATION_MESSAGE);
+            } else if (task.getState() == BackgroundTask.State.CANCELLED) {
+                JOptionPane.showMessageDialog(MainFrame.this,
+                        "Import cancelled. Batches already imported were kept.",
+                        "Import Cancelled",
+                        JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(MainFrame.this,
+                        "Error importing " + what.toLowerCase() + ": " + failure.getCause(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+        dialog.setVisible(true); // Modal until the task completes and disposes it
+    }
+
+    // Runs in the background; the status bar shows it and can cancel it
+    private void backUp() {
+        BackgroundTask<Path> task = tasks.submit("Backing up data", context -> {
+            context.progress(-1, "storing changed files");
+            return controller.backup();
+        });
+        task.future().whenComplete((manifest, failure) -> SwingUtilities.invokeLater(() -> {
+            if (failure == null) {
+                JOptionPane.showMessageDialog(this,
+                        "Data backed up to " + manifest.toAbsolutePath(),
+                        "Backup Complete",
+                        JOptionPane.INFORMATION_MESSAGE);
+            } else if (task.getState() != BackgroundTask.State.CANCELLED) {
+                JOptionPane.showMessageDialog(this,
+                        "Error backing up data: " + failure.getCause(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
     private void showAboutDialog() {
         JOptionPane.showMessageDialog(this,
                 "Library Management System\nVersion 1.0\n© 2024",
@@ -78,23 +309,56 @@ public class MainFrame extends JFrame {
                 JOptionPane.INFORMATION_MESSAGE);
     }
 
+    private final Map<JLabel, Supplier<String>> statValues = new LinkedHashMap<>();
+    private final AtomicBoolean statisticsRefreshPending = new AtomicBoolean();
+    private final Runnable statisticsListener = this::scheduleStatisticsRefresh;
+    private Timer statisticsTimer;
+
     private JPanel createStatisticsPanel() {
-        JPanel panel = new JPanel(new GridLayout(2, 2, 10, 10));
+        JPanel panel = new JPanel(new GridLayout(2, 3, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        // Create statistics cards
-        panel.add(createStatCard("Total Books", String.valueOf(controller.getAllBooks().size())));
-        panel.add(createStatCard("Available Books", String.valueOf(controller.getAllBooks().stream()
-                .filter(Book::isAvailable)
-                .count())));
-        panel.add(createStatCard("Total Loans", String.valueOf(controller.getAllLoans().size())));
-        panel.add(createStatCard("Active Loans", String.valueOf(controller.getAllLoans().stream()
-                .filter(loan -> loan.getReturnDate() == null)
-                .count())));
+        // Create statistics cards, all read in O(1) from the incremental counters
+        LibraryStatistics stats = controller.getStatistics();
+        panel.add(createStatCard("Total Books", () -> String.valueOf(stats.getTotalBooks())));
+        panel.add(createStatCard("Available Books", () -> String.valueOf(stats.getAvailableBooks())));
+        panel.add(createStatCard("Total Loans", () -> String.valueOf(stats.getTotalLoans())));
+        panel.add(createStatCard("Active Loans", () -> String.valueOf(stats.getActiveLoans())));
+        panel.add(createStatCard("Overdue Loans", () -> String.valueOf(stats.getOverdueLoans())));
+        panel.add(createStatCard("Outstanding Penalties", () -> String.format("$%.2f", stats.getOutstandingPenalties())));
+
+        // Live updates on every change, plus a periodic tick for the daily overdue rollover
+        stats.addListener(statisticsListener);
+        statisticsTimer = new Timer(60_000, e -> refreshStatistics());
+        statisticsTimer.start();
+        refreshStatistics();
         return panel;
     }
 
-    private JPanel createStatCard(String title, String value) {
+    // Coalesces bursts of changes into a single repaint on the EDT
+    private void scheduleStatisticsRefresh() {
+        if (statisticsRefreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                statisticsRefreshPending.set(false);
+                refreshStatistics();
+            });
+        }
+    }
+
+    private void refreshStatistics() {
+        statValues.forEach((label, value) -> label.setText(value.get()));
+    }
+
+    @Override
+    public void dispose() {
+        controller.getStatistics().removeListener(statisticsListener);
+        controller.removePersistenceListener(persistenceListener);
+        tasks.removeListener(taskListener);
+        statisticsTimer.stop();
+        super.dispose();
+    }
+
+    private JPanel createStatCard(String title, Supplier<String> value) {
         JPanel card = new JPanel();
         card.setLayout(new BoxLayout(card, BoxLayout.Y_AXIS));
         card.setBorder(BorderFactory.createCompoundBorder(
@@ -107,7 +371,8 @@ public class MainFrame extends JFrame {
         titleLabel.setFont(new Font("Arial", Font.BOLD, 16));
         titleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        JLabel valueLabel = new JLabel(value);
+        JLabel valueLabel = new JLabel();
+        statValues.put(valueLabel, value);
         valueLabel.setFont(new Font("Arial", Font.BOLD, 24));
         valueLabel.setForeground(new Color(41, 128, 185));
         valueLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -123,7 +388,8 @@ public class MainFrame extends JFrame {
     //********************************************************************************************
    /**************************Book Pannel********************************************/
     private JTable bookTable;
-    private DefaultTableModel bookTableModel;
+    private EntityTableModel<Book> bookTableModel;
+    private SearchAsYouType<Book> bookSearch;
 
 
     private JPanel createBooksPanel() {
@@ -147,10 +413,17 @@ public class MainFrame extends JFrame {
 
         // Table
         String[] columns = {"ID", "Title", "Author", "Genre", "Year", "Available"};
-        bookTableModel = new DefaultTableModel(columns, 0) {
+        bookTableModel = new EntityTableModel<>(controller.bookView(), columns) {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            protected Object valueAt(Book book, int column) {
+                return switch (column) {
+                    case 0 -> book.getId();
+                    case 1 -> book.getTitle();
+                    case 2 -> book.getAuthor();
+                    case 3 -> book.getGenre();
+                    case 4 -> book.getYear();
+                    default -> book.isAvailable() ? "Yes" : "No";
+                };
             }
         };
         bookTable = new JTable(bookTableModel); // Use class field
@@ -175,19 +448,20 @@ public class MainFrame extends JFrame {
             }
         });
 
+        bookSearch = new SearchAsYouType<>(searchField,
+                query -> query.isEmpty() ? controller.bookView() : controller.searchBooks(query),
+                bookTableModel::showRows);
+        searchButton.addActionListener(e -> bookSearch.searchNow());
+
         panel.add(controlPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
-        refreshBookTable(bookTableModel);
         return panel;
     }
 
     private void showEditBookDialog(String bookId) {
         // Find the book to edit
-        Book book = controller.getAllBooks().stream()
-                .filter(b -> b.getId().equals(bookId))
-                .findFirst()
-                .orElse(null);
+        Book book = controller.getBookById(bookId);
 
         if (book == null) {
             JOptionPane.showMessageDialog(this,
@@ -282,17 +556,25 @@ public class MainFrame extends JFrame {
                 return;
             }
 
-            // Update book object
-            book.setTitle(titleField.getText().trim());
-            book.setAuthor(authorField.getText().trim());
-            book.setGenre(genreField.getText().trim());
-            book.setYear((Integer) yearSpinner.getValue());
-            book.setAvailable(availableCheck.isSelected());
+            String title = titleField.getText().trim();
+            String author = authorField.getText().trim();
+            String genre = genreField.getText().trim();
+            int year = (Integer) yearSpinner.getValue();
+            boolean available = availableCheck.isSelected();
 
-            // Save changes
+            // Save changes; availability only if it was changed here, so a
+            // checkout or return made while the dialog was open stands
             try {
-                controller.updateBook(book);
-                refreshBookTable(bookTableModel);
+                controller.updateBook(bookId, edited -> {
+                    edited.setTitle(title);
+                    edited.setAuthor(author);
+                    edited.setGenre(genre);
+                    edited.setYear(year);
+                    if (available != book.isAvailable()) {
+                        edited.setAvailable(available);
+                    }
+                });
+                rowUpdated(bookTableModel, bookSearch, bookTable.getSelectedRow());
                 dialog.dispose();
                 JOptionPane.showMessageDialog(this,
                         "Book updated successfully",
@@ -413,7 +695,7 @@ public class MainFrame extends JFrame {
             try {
                 Book newBook = new Book(UUID.randomUUID().toString(), title, author, genre, year);
                 controller.addBook(newBook);
-                refreshBookTable(bookTableModel);
+                rowsInserted(bookTableModel, bookSearch);
                 dialog.dispose();
                 JOptionPane.showMessageDialog(this,
                         "Book added successfully",
@@ -450,17 +732,36 @@ public class MainFrame extends JFrame {
         dialog.add(wrapperPanel);
         dialog.setVisible(true);
     }
-    private void refreshBookTable(DefaultTableModel model) {
-        model.setRowCount(0);
-        for (Book book : controller.getAllBooks()) { // Changed from getBooks() to getAllBooks()
-            model.addRow(new Object[]{
-                    book.getId(),
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getGenre(),
-                    book.getYear(),
-                    book.isAvailable() ? "Yes" : "No"
-            });
+    // The live table gets per-row events; filtered results are simply re-queried
+    private <T> void rowsInserted(EntityTableModel<T> model, SearchAsYouType<T> search) {
+        if (model.isLive()) {
+            model.rowsInserted();
+        } else {
+            search.searchNow();
+        }
+    }
+
+    private <T> void rowUpdated(EntityTableModel<T> model, SearchAsYouType<T> search, int row) {
+        if (model.isLive()) {
+            model.rowUpdated(row);
+        } else {
+            search.searchNow();
+        }
+    }
+
+    private <T> void allRowsUpdated(EntityTableModel<T> model, SearchAsYouType<T> search) {
+        if (model.isLive()) {
+            model.allRowsUpdated();
+        } else {
+            search.searchNow();
+        }
+    }
+
+    private <T> void rowRemoved(EntityTableModel<T> model, SearchAsYouType<T> search, int row) {
+        if (model.isLive()) {
+            model.rowRemoved(row);
+        } else {
+            search.searchNow();
         }
     }
 
@@ -472,15 +773,17 @@ public class MainFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
+            int row = bookTable.getSelectedRow();
             controller.deleteBook(bookId);
-            refreshBookTable(bookTableModel);
+            rowRemoved(bookTableModel, bookSearch, row);
         }
     }
     //*************************************************************************************************
     /***************************************Users Pannel *************************************************/
     // Add these fields at the top of MainFrame class
     private JTable userTable;
-    private DefaultTableModel userTableModel;
+    private EntityTableModel<User> userTableModel;
+    private SearchAsYouType<User> userSearch;
 
     // Replace the createUsersPanel method with this implementation
     private JPanel createUsersPanel() {
@@ -510,10 +813,15 @@ public class MainFrame extends JFrame {
 
         // Table
         String[] columns = {"ID", "Name", "Email", "Role"};
-        userTableModel = new DefaultTableModel(columns, 0) {
+        userTableModel = new EntityTableModel<>(controller.userView(), columns) {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            protected Object valueAt(User user, int column) {
+                return switch (column) {
+                    case 0 -> user.getId();
+                    case 1 -> user.getName();
+                    case 2 -> user.getEmail();
+                    default -> user.getRole();
+                };
             }
         };
         userTable = new JTable(userTableModel);
@@ -538,12 +846,14 @@ public class MainFrame extends JFrame {
             }
         });
 
-        searchButton.addActionListener(e -> searchUsers(searchField.getText()));
+        userSearch = new SearchAsYouType<>(searchField,
+                query -> query.isEmpty() ? controller.userView() : controller.searchUsers(query),
+                userTableModel::showRows);
+        searchButton.addActionListener(e -> userSearch.searchNow());
 
         panel.add(controlPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
-        refreshUserTable();
         return panel;
     }
 
@@ -611,15 +921,18 @@ public class MainFrame extends JFrame {
                 return;
             }
 
-            try {
-                User newUser = new User(UUID.randomUUID().toString(), name, email, password, UserRole.valueOf(role));
-                controller.addUser(newUser);
-                refreshUserTable();
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "User added successfully");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(dialog, "Error adding user: " + ex.getMessage());
-            }
+            withHashedPassword(dialog, saveButton, password, hash -> {
+                try {
+                    User newUser = new User(UUID.randomUUID().toString(), name, email, null, UserRole.valueOf(role));
+                    newUser.setPasswordHash(hash);
+                    controller.addUser(newUser);
+                    rowsInserted(userTableModel, userSearch);
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "User added successfully");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(dialog, "Error adding user: " + ex.getMessage());
+                }
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -699,22 +1012,23 @@ public class MainFrame extends JFrame {
                 return;
             }
 
-            // Update user object
-            user.setName(name);
-            user.setEmail(email);
-            if (!password.isEmpty()) {
-                user.setPassword(password);
-            }
-            user.setRole(UserRole.valueOf(role));
-
-            try {
-                controller.updateUser(user);
-                refreshUserTable();
-                dialog.dispose();
-                JOptionPane.showMessageDialog(this, "User updated successfully");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(dialog, "Error updating user: " + ex.getMessage());
-            }
+            withHashedPassword(dialog, saveButton, password, hash -> {
+                try {
+                    controller.updateUser(userId, edited -> {
+                        edited.setName(name);
+                        edited.setEmail(email);
+                        if (hash != null) {
+                            edited.setPasswordHash(hash);
+                        }
+                        edited.setRole(UserRole.valueOf(role));
+                    });
+                    rowUpdated(userTableModel, userSearch, userTable.getSelectedRow());
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(this, "User updated successfully");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(dialog, "Error updating user: " + ex.getMessage());
+                }
+            });
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -730,6 +1044,27 @@ public class MainFrame extends JFrame {
         dialog.setVisible(true);
     }
 
+    // The password hash takes a noticeable moment, so it runs on a task and
+    // the dialog stays responsive; save then runs back on the event thread,
+    // which owns the controller's table views, with the hash (null when no
+    // password was entered) and the controller has nothing left to hash
+    private void withHashedPassword(JDialog dialog, JButton saveButton, String password, Consumer<String> save) {
+        if (password.isEmpty()) {
+            save.accept(null);
+            return;
+        }
+        saveButton.setEnabled(false);
+        BackgroundTask<String> task = tasks.submit("Hashing password", context -> PasswordHasher.hash(password));
+        task.future().whenComplete((hash, failure) -> SwingUtilities.invokeLater(() -> {
+            saveButton.setEnabled(true);
+            if (failure == null) {
+                save.accept(hash);
+            } else if (task.getState() != BackgroundTask.State.CANCELLED) {
+                JOptionPane.showMessageDialog(dialog, "Error hashing password: " + failure.getCause());
+            }
+        }));
+    }
+
     private void deleteUser(String userId) {
         int confirm = JOptionPane.showConfirmDialog(this,
                 "Are you sure you want to delete this user?",
@@ -737,40 +1072,17 @@ public class MainFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
+            int row = userTable.getSelectedRow();
             controller.deleteUser(userId);
-            refreshUserTable();
-        }
-    }
-
-    private void refreshUserTable() {
-        userTableModel.setRowCount(0);
-        for (User user : controller.getAllUsers()) {
-            userTableModel.addRow(new Object[]{
-                    user.getId(),
-                    user.getName(),
-                    user.getEmail(),
-                    user.getRole()
-            });
+            rowRemoved(userTableModel, userSearch, row);
         }
     }
-
-    private void searchUsers(String query) {
-        userTableModel.setRowCount(0);
-        controller.getAllUsers().stream()
-                .filter(user -> user.getName().toLowerCase().contains(query.toLowerCase()) ||
-                        user.getEmail().toLowerCase().contains(query.toLowerCase()))
-                .forEach(user -> userTableModel.addRow(new Object[]{
-                        user.getId(),
-                        user.getName(),
-                        user.getEmail(),
-                        user.getRole()
-                }));
-    }
     //******************************************************************************************
     /*********************************Loans Pannel******************************************************/
     // Add these fields at the top of the MainFrame class
     private JTable loanTable;
-    private DefaultTableModel loanTableModel;
+    private EntityTableModel<Loan> loanTableModel;
+    private SearchAsYouType<Loan> loanSearch;
 
     // Replace the createLoansPanel method with this implementation
     private JPanel createLoansPanel() {
@@ -779,6 +1091,8 @@ public class MainFrame extends JFrame {
 
         // Control Panel
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton checkoutButton = new JButton("Checkout");
+        JButton returnButton = new JButton("Return Selected");
         JButton addButton = new JButton("Add Loan");
         JButton editButton = new JButton("Edit Loan");
         JButton deleteButton = new JButton("Delete Loan");
@@ -786,11 +1100,15 @@ public class MainFrame extends JFrame {
         JButton searchButton = new JButton("Search");
 
         // Style buttons
+        styleButton(checkoutButton, new Color(46, 204, 113));
+        styleButton(returnButton, new Color(52, 152, 219));
         styleButton(addButton, new Color(46, 204, 113));
         styleButton(editButton, new Color(52, 152, 219));
         styleButton(deleteButton, new Color(231, 76, 60));
         styleButton(searchButton, new Color(52, 73, 94));
 
+        controlPanel.add(checkoutButton);
+        controlPanel.add(returnButton);
         controlPanel.add(addButton);
         controlPanel.add(editButton);
         controlPanel.add(deleteButton);
@@ -800,16 +1118,26 @@ public class MainFrame extends JFrame {
 
         // Table for loan data
         String[] columns = {"Loan ID", "User ID", "Book ID", "Loan Date", "Due Date", "Return Date", "Penalty"};
-        loanTableModel = new DefaultTableModel(columns, 0) {
+        loanTableModel = new EntityTableModel<>(controller.loanView(), columns) {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            protected Object valueAt(Loan loan, int column) {
+                return switch (column) {
+                    case 0 -> loan.getId();
+                    case 1 -> loan.getUserId();
+                    case 2 -> loan.getBookId();
+                    case 3 -> loan.getLoanDate();
+                    case 4 -> loan.getDueDate();
+                    case 5 -> loan.getReturnDate();
+                    default -> loan.getPenalty();
+                };
             }
         };
         loanTable = new JTable(loanTableModel);
         JScrollPane scrollPane = new JScrollPane(loanTable);
 
         // Add action listeners
+        checkoutButton.addActionListener(e -> showCheckoutDialog());
+        returnButton.addActionListener(e -> returnSelectedLoans());
         addButton.addActionListener(e -> showAddLoanDialog());
         editButton.addActionListener(e -> {
             int selectedRow = loanTable.getSelectedRow();
@@ -828,15 +1156,124 @@ public class MainFrame extends JFrame {
             }
         });
 
-        searchButton.addActionListener(e -> searchLoans(searchField.getText()));
+        loanSearch = new SearchAsYouType<>(searchField,
+                query -> query.isEmpty() ? controller.loanView() : controller.searchLoans(query),
+                loanTableModel::showRows);
+        searchButton.addActionListener(e -> loanSearch.searchNow());
 
         panel.add(controlPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
-        refreshLoanTable();
         return panel;
     }
 
+    // Kiosk checkout: one patron and a stack of available books, all lent
+    // together in one unit of work
+    private void showCheckoutDialog() {
+        JDialog dialog = new JDialog(this, "Checkout Books", true);
+        dialog.setSize(500, 450);
+        dialog.setLocationRelativeTo(this);
+
+        JComboBox<User> userCombo = new JComboBox<>(controller.getAllUsers().toArray(new User[0]));
+        userCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value instanceof User user) {
+                    setText(user.getName() + " <" + user.getEmail() + ">");
+                }
+                return this;
+            }
+        });
+
+        JList<Book> bookList = new JList<>(controller.getAvailableBooks().toArray(new Book[0]));
+        bookList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        bookList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value instanceof Book book) {
+                    setText(book.getTitle() + " - " + book.getAuthor() + " (" + book.getId() + ")");
+                }
+                return this;
+            }
+        });
+        JLabel selectionLabel = new JLabel("0 book(s) selected");
+        bookList.addListSelectionListener(e ->
+                selectionLabel.setText(bookList.getSelectedIndices().length + " book(s) selected"));
+
+        JPanel topPanel = new JPanel(new BorderLayout(5, 5));
+        topPanel.add(new JLabel("Patron:"), BorderLayout.WEST);
+        topPanel.add(userCombo, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton checkoutButton = new JButton("Checkout");
+        JButton cancelButton = new JButton("Cancel");
+        styleButton(checkoutButton, new Color(46, 204, 113));
+        styleButton(cancelButton, new Color(231, 76, 60));
+        buttonPanel.add(selectionLabel);
+        buttonPanel.add(checkoutButton);
+        buttonPanel.add(cancelButton);
+
+        checkoutButton.addActionListener(e -> {
+            User user = (User) userCombo.getSelectedItem();
+            java.util.List<Book> selected = bookList.getSelectedValuesList();
+            if (user == null || selected.isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Please select a patron and at least one book");
+                return;
+            }
+            try {
+                java.util.List<Loan> created = controller.createLoans(user.getId(),
+                        selected.stream().map(Book::getId).toList());
+                rowsInserted(loanTableModel, loanSearch);
+                allRowsUpdated(bookTableModel, bookSearch);
+                dialog.dispose();
+                JOptionPane.showMessageDialog(this, created.size() + " book(s) checked out, due "
+                        + created.get(0).getDueDate());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(dialog, "Error checking out: " + ex.getMessage());
+            }
+        });
+        cancelButton.addActionListener(e -> dialog.dispose());
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(topPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(bookList), BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.add(panel);
+        dialog.setVisible(true);
+    }
+
+    // Returns every selected loan at once; penalties are summed in one pass
+    private void returnSelectedLoans() {
+        int[] rows = loanTable.getSelectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Please select the loans to return");
+            return;
+        }
+        java.util.List<String> loanIds = Arrays.stream(rows)
+                .mapToObj(row -> loanTable.getValueAt(row, 0).toString())
+                .toList();
+        try {
+            double penalty = controller.returnBooks(loanIds);
+            if (loanTableModel.isLive()) {
+                for (int row : rows) {
+                    loanTableModel.rowUpdated(row);
+                }
+            } else {
+                loanSearch.searchNow();
+            }
+            allRowsUpdated(bookTableModel, bookSearch);
+            JOptionPane.showMessageDialog(this, String.format("%d book(s) returned. Total penalty: $%.2f",
+                    loanIds.size(), penalty));
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error returning books: " + ex.getMessage());
+        }
+    }
+
     private void showAddLoanDialog() {
         JDialog dialog = new JDialog(this, "Add New Loan", true);
         dialog.setSize(400, 300);
@@ -912,7 +1349,7 @@ public class MainFrame extends JFrame {
                         LocalDate.parse(dueDate)
                 );
                 controller.addLoan(newLoan);
-                refreshLoanTable();
+                rowsInserted(loanTableModel, loanSearch);
                 dialog.dispose();
                 JOptionPane.showMessageDialog(this, "Loan added successfully");
             } catch (Exception ex) {
@@ -1007,15 +1444,17 @@ public class MainFrame extends JFrame {
 
             try {
                 double penalty = penaltyText.isEmpty() ? 0.0 : Double.parseDouble(penaltyText);
-
-                loan.setUserId(userId);
-                loan.setBookId(bookId);
-                loan.setLoanDate(LocalDate.parse(loanDate));
-                loan.setDueDate(LocalDate.parse(dueDate));
-                loan.setPenalty(penalty);
-
-                controller.updateLoan(loan);
-                refreshLoanTable();
+                LocalDate loanedOn = LocalDate.parse(loanDate);
+                LocalDate dueOn = LocalDate.parse(dueDate);
+
+                controller.updateLoan(loanId, edited -> {
+                    edited.setUserId(userId);
+                    edited.setBookId(bookId);
+                    edited.setLoanDate(loanedOn);
+                    edited.setDueDate(dueOn);
+                    edited.setPenalty(penalty);
+                });
+                rowUpdated(loanTableModel, loanSearch, loanTable.getSelectedRow());
                 dialog.dispose();
                 JOptionPane.showMessageDialog(this, "Loan updated successfully");
             } catch (Exception ex) {
@@ -1044,41 +1483,11 @@ public class MainFrame extends JFrame {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
+            int row = loanTable.getSelectedRow();
             controller.deleteLoan(loanId);
-            refreshLoanTable();
-        }
-    }
-
-    private void refreshLoanTable() {
-        loanTableModel.setRowCount(0);
-        for (Loan loan : controller.getAllLoans()) {
-            loanTableModel.addRow(new Object[]{
-                    loan.getId(),
-                    loan.getUserId(),
-                    loan.getBookId(),
-                    loan.getLoanDate(),
-                    loan.getDueDate(),
-                    loan.getReturnDate(),
-                    loan.getPenalty()
-            });
+            rowRemoved(loanTableModel, loanSearch, row);
         }
     }
-
-    private void searchLoans(String query) {
-        loanTableModel.setRowCount(0);
-        controller.getAllLoans().stream()
-                .filter(loan -> loan.getUserId().toLowerCase().contains(query.toLowerCase()) ||
-                        loan.getBookId().toLowerCase().contains(query.toLowerCase()))
-                .forEach(loan -> loanTableModel.addRow(new Object[]{
-                        loan.getId(),
-                        loan.getUserId(),
-                        loan.getBookId(),
-                        loan.getLoanDate(),
-                        loan.getDueDate(),
-                        loan.getReturnDate(),
-                        loan.getPenalty()
-                }));
-    }
 //*******************************************************************************************
     /*************************** Logout Pannel***********************************/
     private void addLogoutButton(JPanel controlPanel) {
@@ -1105,8 +1514,8 @@ public class MainFrame extends JFrame {
         }
     }
     private void clearSessionData() {
-        // Example: Reset any global variables or static fields
-        CurrentUser.setUser(null); // Assuming CurrentUser stores logged-in user details
+        // Ends the session only; the controller and its data stay loaded for the next login
+        controller.logout();
     }
     private void showLoginScreen() {
         SwingUtilities.invokeLater(() -> {
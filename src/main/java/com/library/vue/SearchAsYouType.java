@@ -0,0 +1,77 @@
+package com.library.vue;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Incremental search for a text field: keystrokes are debounced, the query
+// runs on a SwingWorker off the Event Dispatch Thread, a newer query cancels
+// the one still in flight, and only the latest results reach the table.
+class SearchAsYouType<T> {
+    private static final int DEBOUNCE_MS = 250;
+
+    private final JTextField field;
+    private final Function<String, List<T>> search;
+    private final Consumer<List<T>> onResults;
+    private final Timer debounce;
+    private SwingWorker<List<T>, Void> running;
+
+    SearchAsYouType(JTextField field, Function<String, List<T>> search, Consumer<List<T>> onResults) {
+        this.field = field;
+        this.search = search;
+        this.onResults = onResults;
+        this.debounce = new Timer(DEBOUNCE_MS, e -> searchNow());
+        this.debounce.setRepeats(false);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        field.addActionListener(e -> searchNow());
+    }
+
+    // Runs the current query immediately (Search button, Enter key, refresh after edits)
+    void searchNow() {
+        debounce.stop();
+        if (running != null) {
+            running.cancel(true);
+        }
+        String query = field.getText().trim();
+        SwingWorker<List<T>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected List<T> doInBackground() {
+                return search.apply(query);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || running != this) {
+                    return; // Superseded by a newer query
+                }
+                try {
+                    onResults.accept(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        running = worker;
+        worker.execute();
+    }
+}
@@ -0,0 +1,337 @@
+package com.library.controller;
+
+import com.library.dao.*;
+import com.library.metrics.MetricsRegistry;
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+import com.library.model.UserRole;
+import com.library.security.PasswordHasher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryControllerTest {
+    private static final int BOOKS = 200;
+    private static final int DESKS = 16;
+
+    @TempDir
+    Path dataDir;
+
+    private LibraryController open() {
+        return new LibraryController(new CsvLibraryStore(new CSVHandler(dataDir.toString())));
+    }
+
+    // Every desk tries to lend every copy at once, in its own order; each
+    // copy must go out exactly once, in memory and after a restart
+    @Test
+    void concurrentCheckoutsLendEachCopyOnce() throws Exception {
+        List<String> bookIds = new ArrayList<>();
+        String userId;
+        try (LibraryController controller = open()) {
+            for (int i = 0; i < BOOKS; i++) {
+                Book book = new Book("book-" + i, "Title " + i, "Author", "Genre", 2000);
+                controller.addBook(book);
+                bookIds.add(book.getId());
+            }
+            userId = controller.getAllUsers().get(0).getId();
+
+            ExecutorService desks = Executors.newFixedThreadPool(DESKS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Loan>>> results = new ArrayList<>();
+            for (int desk = 0; desk < DESKS; desk++) {
+                List<String> order = new ArrayList<>(bookIds);
+                Collections.shuffle(order, new Random(desk));
+                results.add(desks.submit(() -> {
+                    start.await();
+                    List<Loan> lent = new ArrayList<>();
+                    for (String bookId : order) {
+                        Loan loan = controller.createLoan(userId, bookId);
+                        if (loan != null) {
+                            lent.add(loan);
+                        }
+                    }
+                    return lent;
+                }));
+            }
+            start.countDown();
+            Map<String, Integer> loansPerBook = new HashMap<>();
+            for (Future<List<Loan>> result : results) {
+                for (Loan loan : result.get(60, TimeUnit.SECONDS)) {
+                    loansPerBook.merge(loan.getBookId(), 1, Integer::sum);
+                }
+            }
+            desks.shutdown();
+
+            assertEquals(BOOKS, loansPerBook.size());
+            assertTrue(loansPerBook.values().stream().allMatch(count -> count == 1), loansPerBook.toString());
+            for (String bookId : bookIds) {
+                assertFalse(controller.getBookById(bookId).isAvailable());
+                assertEquals(1, controller.getBookLoans(bookId).size());
+            }
+            assertEquals(BOOKS, controller.getUserLoans(userId).size());
+            controller.flush();
+        }
+
+        try (LibraryController reloaded = open()) {
+            for (String bookId : bookIds) {
+                assertEquals(1, reloaded.getBookLoans(bookId).size());
+                assertFalse(reloaded.getBookById(bookId).isAvailable());
+            }
+        }
+    }
+
+    // Returns race the same way: each loan is closed once and its copy is
+    // back on the shelf
+    @Test
+    void concurrentReturnsCloseEachLoanOnce() throws Exception {
+        try (LibraryController controller = open()) {
+            User user = controller.getAllUsers().get(0);
+            List<String> loanIds = new ArrayList<>();
+            for (int i = 0; i < BOOKS; i++) {
+                controller.addBook(new Book("book-" + i, "Title " + i, "Author", "Genre", 2000));
+                loanIds.add(controller.createLoan(user.getId(), "book-" + i).getId());
+            }
+            int availableBefore = controller.getAvailableBooksCount();
+
+            ExecutorService desks = Executors.newFixedThreadPool(DESKS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> returned = new ArrayList<>();
+            for (int desk = 0; desk < DESKS; desk++) {
+                returned.add(desks.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for (String loanId : loanIds) {
+                        try {
+                            controller.returnBooks(List.of(loanId));
+                            count++;
+                        } catch (IllegalStateException alreadyReturned) {
+                            // Another desk got there first
+                        }
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> count : returned) {
+                total += count.get(60, TimeUnit.SECONDS);
+            }
+            desks.shutdown();
+
+            assertEquals(BOOKS, total);
+            assertEquals(availableBefore + BOOKS, controller.getAvailableBooksCount());
+            assertTrue(controller.getActiveLoans().stream().noneMatch(loan -> loanIds.contains(loan.getId())));
+        }
+    }
+
+    // An edit the store rejects is rolled back whole: the indexed book, its
+    // search entry and the loans made in the same unit are as before
+    @Test
+    void rejectedWritesLeaveIndexesUnchanged() {
+        ControlledStore store = new ControlledStore(new CsvLibraryStore(new CSVHandler(dataDir.toString())));
+        try (LibraryController controller = new LibraryController(store)) {
+            controller.addBook(new Book("book-1", "Dune", "Herbert", "Science Fiction", 1965));
+            String userId = controller.getAllUsers().get(0).getId();
+            store.failBookSaves = true;
+
+            assertThrows(StoreException.class,
+                    () -> controller.updateBook("book-1", book -> book.setTitle("Rejected")));
+            assertThrows(StoreException.class, () -> controller.createLoan(userId, "book-1"));
+
+            Book book = controller.getBookById("book-1");
+            assertEquals("Dune", book.getTitle());
+            assertTrue(book.isAvailable());
+            assertEquals(1, controller.searchBooks("dune").size());
+            assertTrue(controller.searchBooks("rejected").isEmpty());
+            assertTrue(controller.getBookLoans("book-1").isEmpty());
+
+            store.failBookSaves = false;
+            assertTrue(controller.updateBook("book-1", edited -> edited.setTitle("Dune Messiah")));
+            assertEquals("Dune Messiah", controller.getBookById("book-1").getTitle());
+            assertFalse(controller.updateBook("missing", edited -> edited.setTitle("None")));
+        }
+    }
+
+    // Lookups by key neither wait for a unit of work in progress nor see
+    // its changes before it is committed
+    @Test
+    void lookupsDoNotWaitForWriters() throws Exception {
+        ControlledStore store = new ControlledStore(new CsvLibraryStore(new CSVHandler(dataDir.toString())));
+        try (LibraryController controller = new LibraryController(store)) {
+            controller.addBook(new Book("book-1", "Dune", "Herbert", "Science Fiction", 1965));
+            String userId = controller.getAllUsers().get(0).getId();
+            store.bookSaveStarted = new CountDownLatch(1);
+            store.bookSaveReleased = new CountDownLatch(1);
+
+            ExecutorService desk = Executors.newSingleThreadExecutor();
+            Future<Loan> checkout = desk.submit(() -> controller.createLoan(userId, "book-1"));
+            assertTrue(store.bookSaveStarted.await(10, TimeUnit.SECONDS));
+            // The checkout holds the write lock, its loan indexed but not committed
+            assertTrue(controller.getBookById("book-1").isAvailable());
+            assertTrue(controller.getBookLoans("book-1").isEmpty());
+            assertTrue(controller.getUserLoans(userId).isEmpty());
+            assertFalse(checkout.isDone());
+
+            store.bookSaveReleased.countDown();
+            Loan loan = checkout.get(10, TimeUnit.SECONDS);
+            desk.shutdown();
+            assertFalse(controller.getBookById("book-1").isAvailable());
+            assertEquals(List.of(loan.getId()), controller.getBookLoans("book-1").stream().map(Loan::getId).toList());
+            assertEquals(loan.getId(), controller.getLoanById(loan.getId()).getId());
+        }
+    }
+
+    // Nothing process-wide (shutdown hooks, the metrics registry) keeps a
+    // closed controller, or the data it indexes, reachable
+    @Test
+    void closedControllerCanBeCollected() throws InterruptedException {
+        LibraryController controller = open();
+        WeakReference<LibraryController> closed = new WeakReference<>(controller);
+        controller.close();
+        controller = null;
+        assertTrue(MetricsRegistry.getDefault().samples().stream()
+                .noneMatch(sample -> sample.name().equals("library_books")));
+
+        for (int i = 0; i < 50 && closed.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(closed.get());
+    }
+
+    // Whether a password is hashed is said, not guessed: a plain password
+    // shaped like a hash is still hashed, and an edit may only change the
+    // password through setPasswordHash
+    @Test
+    void passwordsAreHashedByExplicitRequest() {
+        try (LibraryController controller = open()) {
+            String lookalike = "pbkdf2-sha512$1$c2FsdA$aGFzaA";
+            controller.addUser(new User("user-1", "Ada", "ada@example.org", lookalike, UserRole.MEMBER));
+            assertNotEquals(lookalike, controller.getUserById("user-1").getPassword());
+            assertNotNull(controller.openSession("ada@example.org", lookalike));
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> controller.updateUser("user-1", user -> user.setPassword("plain")));
+            assertNull(controller.openSession("ada@example.org", "plain"));
+
+            String hash = PasswordHasher.hash("changed");
+            assertTrue(controller.updateUser("user-1", user -> user.setPasswordHash(hash)));
+            assertNotNull(controller.openSession("ada@example.org", "changed"));
+            assertTrue(controller.updateUser("user-1", user -> user.setName("Ada L.")));
+            assertNotNull(controller.openSession("ada@example.org", "changed"));
+        }
+    }
+
+    // What callers hold is theirs: changing it does not reach the indexes
+    @Test
+    void callersGetCopies() {
+        try (LibraryController controller = open()) {
+            Book added = new Book("book-1", "Dune", "Herbert", "Science Fiction", 1965);
+            controller.addBook(added);
+            added.setTitle("Changed after adding");
+            Book read = controller.getBookById("book-1");
+            read.setAvailable(false);
+
+            Book again = controller.getBookById("book-1");
+            assertNotSame(read, again);
+            assertEquals("Dune", again.getTitle());
+            assertTrue(again.isAvailable());
+            assertThrows(IllegalArgumentException.class,
+                    () -> controller.updateBook("book-1", book -> book.setId("book-2")));
+        }
+    }
+
+    // Delegates to a real store, failing or holding up book saves on demand
+    private static class ControlledStore implements LibraryStore {
+        private final LibraryStore delegate;
+        volatile boolean failBookSaves;
+        volatile CountDownLatch bookSaveStarted;
+        volatile CountDownLatch bookSaveReleased;
+
+        private final BookRepository books = new BookRepository() {
+            @Override
+            public List<Book> findAll() {
+                return delegate.books().findAll();
+            }
+
+            @Override
+            public void save(Book book) {
+                if (failBookSaves) {
+                    throw new StoreException("Book save failed", new IOException("disk full"));
+                }
+                CountDownLatch released = bookSaveReleased;
+                if (released != null) {
+                    bookSaveStarted.countDown();
+                    try {
+                        released.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                delegate.books().save(book);
+            }
+
+            @Override
+            public void delete(String bookId) {
+                delegate.books().delete(bookId);
+            }
+        };
+
+        ControlledStore(LibraryStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public BookRepository books() {
+            return books;
+        }
+
+        @Override
+        public UserRepository users() {
+            return delegate.users();
+        }
+
+        @Override
+        public LoanRepository loans() {
+            return delegate.loans();
+        }
+
+        @Override
+        public LibraryData load() {
+            return delegate.load();
+        }
+
+        @Override
+        public void commit() {
+            delegate.commit();
+        }
+
+        @Override
+        public void abort() {
+            delegate.abort();
+        }
+
+        @Override
+        public void flush() {
+            delegate.flush();
+        }
+
+        @Override
+        public Path backup() throws IOException {
+            return delegate.backup();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
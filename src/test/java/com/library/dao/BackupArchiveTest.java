@@ -0,0 +1,126 @@
+package com.library.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupArchiveTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] rows(String prefix, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append('"').append(prefix).append('-').append(i).append("\",\"Title\",\"Author\"\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static BackupArchive.Source source(String name, Path path) throws IOException {
+        return new BackupArchive.Source(name, path, Files.size(path));
+    }
+
+    private List<Path> objects() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("archive/objects"))) {
+            return files.sorted().toList();
+        }
+    }
+
+    // A file that only grew is stored as the previous backup's objects plus
+    // one new object holding the appended bytes
+    @Test
+    void secondBackupStoresOnlyAppendedTail() throws IOException {
+        Path loans = dir.resolve("loans.csv");
+        Files.write(loans, rows("loan", 1000));
+        BackupArchive archive = new BackupArchive(dir.resolve("archive"));
+        BackupArchive.Manifest first = archive.backup(List.of(source("loans.csv", loans)));
+
+        Files.write(loans, rows("appended", 10), StandardOpenOption.APPEND);
+        BackupArchive.Manifest second = archive.backup(List.of(source("loans.csv", loans)));
+
+        List<BackupArchive.Segment> before = first.entries().get(0).segments();
+        List<BackupArchive.Segment> after = second.entries().get(0).segments();
+        assertEquals(1, before.size());
+        assertEquals(2, after.size());
+        assertEquals(before.get(0), after.get(0));
+        assertEquals(rows("appended", 10).length, after.get(1).length());
+        assertEquals(2, objects().size());
+        assertTrue(second.storedBytes() < first.storedBytes(), second.storedBytes() + " >= " + first.storedBytes());
+    }
+
+    // Restoring an older backup brings back exactly the bytes it saw
+    @Test
+    void restoresFirstBackupByteForByte() throws IOException {
+        Path loans = dir.resolve("loans.csv");
+        byte[] original = rows("loan", 1000);
+        Files.write(loans, original);
+        BackupArchive archive = new BackupArchive(dir.resolve("archive"));
+        BackupArchive.Manifest first = archive.backup(List.of(source("loans.csv", loans)));
+        Files.write(loans, rows("appended", 10), StandardOpenOption.APPEND);
+        archive.backup(List.of(source("loans.csv", loans)));
+
+        Path restored = dir.resolve("restored.csv");
+        archive.restore(archive.find(first.created()), Map.of("loans.csv", restored));
+        assertArrayEquals(original, Files.readAllBytes(restored));
+    }
+
+    // An object whose content no longer matches its hash fails the restore,
+    // even when it is still valid gzip
+    @Test
+    void corruptObjectFailsRestore() throws IOException {
+        Path books = dir.resolve("books.csv");
+        Files.write(books, rows("book", 100));
+        BackupArchive archive = new BackupArchive(dir.resolve("archive"));
+        BackupArchive.Manifest manifest = archive.backup(List.of(source("books.csv", books)));
+
+        Path object = objects().get(0);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(object))) {
+            out.write(rows("tampered", 100));
+        }
+
+        Path restored = dir.resolve("restored.csv");
+        IOException failure = assertThrows(IOException.class,
+                () -> archive.restore(manifest, Map.of("books.csv", restored)));
+        assertTrue(failure.getMessage().contains("corrupt"), failure.getMessage());
+    }
+
+    // Pruning an old backup deletes only the objects no kept backup uses:
+    // the head of a file that since grew stays, a rewritten file's old
+    // content goes
+    @Test
+    void pruneKeepsObjectsStillReferenced() throws IOException {
+        Path loans = dir.resolve("loans.csv");
+        Path books = dir.resolve("books.csv");
+        Files.write(loans, rows("loan", 1000));
+        Files.write(books, rows("book", 100));
+        BackupArchive archive = new BackupArchive(dir.resolve("archive"));
+        archive.backup(List.of(source("loans.csv", loans), source("books.csv", books)));
+
+        Files.write(loans, rows("appended", 10), StandardOpenOption.APPEND);
+        Files.write(books, rows("rewritten", 120));
+        BackupArchive.Manifest second = archive.backup(List.of(source("loans.csv", loans), source("books.csv", books)));
+        assertEquals(4, objects().size());
+
+        assertEquals(1, archive.prune(new BackupArchive.Retention(1, 0)));
+        assertEquals(List.of(second.file()), archive.list().stream().map(BackupArchive.Manifest::file).toList());
+        assertEquals(3, objects().size());
+
+        Path restoredLoans = dir.resolve("restored-loans.csv");
+        Path restoredBooks = dir.resolve("restored-books.csv");
+        archive.restore(archive.list().get(0), Map.of("loans.csv", restoredLoans, "books.csv", restoredBooks));
+        assertArrayEquals(Files.readAllBytes(loans), Files.readAllBytes(restoredLoans));
+        assertArrayEquals(Files.readAllBytes(books), Files.readAllBytes(restoredBooks));
+    }
+}
@@ -0,0 +1,95 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVHandlerTest {
+    @TempDir
+    Path dir;
+
+    private static Book book(String id) {
+        return new Book(id, "Title " + id, "Author", "Genre", 2000);
+    }
+
+    private static List<String> ids(List<Book> books) {
+        return books.stream().map(Book::getId).toList();
+    }
+
+    // The journal is replayed up to the last COMMIT; a unit flushed without
+    // one (the process died before committing it) is dropped
+    @Test
+    void replayDropsUncommittedUnit() {
+        Path data = dir.resolve("data");
+        CSVHandler handler = new CSVHandler(data.toString());
+        handler.journalBook(book("committed"));
+        handler.commit();
+        handler.journalBook(book("uncommitted"));
+        handler.flush();
+
+        CSVHandler restarted = new CSVHandler(data.toString());
+        List<Book> books = new ArrayList<>(restarted.loadBooks());
+        List<User> users = new ArrayList<>(restarted.loadUsers());
+        List<Loan> loans = new ArrayList<>(restarted.loadLoans());
+        assertEquals(1, restarted.replayJournal(books, users, loans));
+        assertEquals(List.of("committed"), ids(books));
+        restarted.close();
+        handler.abortTransaction(); // Closing would commit the unit the crash cut short
+        handler.close();
+    }
+
+    // A crash between the commit marker and the last rename is rolled
+    // forward: every file the marker lists takes its staged content
+    @Test
+    void rollsForwardInterruptedSnapshotCommit() throws IOException {
+        Path staging = dir.resolve("staging");
+        CSVHandler stager = new CSVHandler(staging.toString());
+        Loan loan = new Loan("loan-1", "user-1", "staged", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 15));
+        stager.saveBooks(List.of(book("staged")));
+        stager.saveLoans(List.of(loan));
+        stager.close();
+
+        Path data = dir.resolve("data");
+        new CSVHandler(data.toString()).close();
+        Files.copy(staging.resolve("books.csv"), data.resolve("books.csv.tmp"));
+        Files.copy(staging.resolve("loans.csv"), data.resolve("loans.csv.tmp"));
+        Files.write(data.resolve("snapshot.commit"),
+                List.of(data + "/books.csv", data + "/loans.csv"), StandardCharsets.UTF_8);
+
+        CSVHandler recovered = new CSVHandler(data.toString());
+        assertEquals(List.of("staged"), ids(recovered.loadBooks()));
+        assertEquals(List.of("loan-1"), recovered.loadLoans().stream().map(Loan::getId).toList());
+        assertFalse(Files.exists(data.resolve("snapshot.commit")));
+        assertFalse(Files.exists(data.resolve("books.csv.tmp")));
+        assertFalse(Files.exists(data.resolve("loans.csv.tmp")));
+        recovered.close();
+    }
+
+    // Without a marker the staged files were never complete: they are
+    // discarded and the live files stand
+    @Test
+    void discardsStagedFilesWithoutMarker() throws IOException {
+        Path data = dir.resolve("data");
+        CSVHandler handler = new CSVHandler(data.toString());
+        handler.saveBooks(List.of(book("live")));
+        handler.close();
+        Files.writeString(data.resolve("books.csv.tmp"), "\"id\",\"title\"\n\"half-writ");
+
+        CSVHandler restarted = new CSVHandler(data.toString());
+        assertEquals(List.of("live"), ids(restarted.loadBooks()));
+        assertFalse(Files.exists(data.resolve("books.csv.tmp")));
+        restarted.close();
+    }
+}
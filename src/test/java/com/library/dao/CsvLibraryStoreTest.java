@@ -0,0 +1,48 @@
+package com.library.dao;
+
+import com.library.model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLibraryStoreTest {
+    @TempDir
+    Path dir;
+
+    // Name -> size and modification time of every file in the directory
+    private Map<String, String> files() throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            for (Path file : list.toList()) {
+                files.put(file.getFileName().toString(), Files.size(file) + "@" + Files.getLastModifiedTime(file));
+            }
+        }
+        return files;
+    }
+
+    // findAll() sees committed journal records but neither compacts the
+    // journal nor writes a binary snapshot
+    @Test
+    void findAllWritesNothing() throws IOException {
+        CsvLibraryStore store = new CsvLibraryStore(new CSVHandler(dir.toString()));
+        store.books().save(new Book("journaled", "Title", "Author", "Genre", 2000));
+        store.commit();
+        store.flush();
+        Map<String, String> before = files();
+
+        assertEquals(1, store.books().findAll().size());
+        assertFalse(store.users().findAll().isEmpty());
+        assertTrue(store.loans().findAll().isEmpty());
+        assertEquals(before, files());
+        assertFalse(before.containsKey("snapshot.bin"));
+        store.close();
+    }
+}
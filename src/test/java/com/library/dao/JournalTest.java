@@ -0,0 +1,108 @@
+package com.library.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    private static List<String> ids(List<String[]> records) {
+        return records.stream().map(record -> record[2]).toList();
+    }
+
+    // A crash leaves the file as of the last flush; a copy of it stands in
+    // for the file found on the next start
+    private Path crashCopy(Journal journal) throws IOException {
+        Path copy = dir.resolve("after-crash.log");
+        Files.copy(journal.getPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    // Records flushed without their COMMIT (a unit cut short by a crash) are
+    // not replayed
+    @Test
+    void replayDropsUncommittedTail() throws IOException {
+        Path copy;
+        try (Journal journal = new Journal(dir.resolve("journal.log").toString())) {
+            journal.append("BOOK", "DELETE", "committed");
+            journal.commit();
+            journal.append("BOOK", "DELETE", "torn");
+            journal.flush();
+            copy = crashCopy(journal);
+        }
+
+        try (Journal reopened = new Journal(copy.toString())) {
+            assertEquals(List.of("committed"), ids(reopened.readRecords()));
+            assertEquals(1, reopened.getRecordCount());
+        }
+    }
+
+    // After a restart the torn transaction is closed with an ABORT, so the
+    // next COMMIT does not adopt its records
+    @Test
+    void reopenAbortsTornTransaction() throws IOException {
+        Path copy;
+        try (Journal journal = new Journal(dir.resolve("journal.log").toString())) {
+            journal.append("BOOK", "DELETE", "first");
+            journal.commit();
+            journal.append("BOOK", "DELETE", "torn");
+            journal.flush();
+            copy = crashCopy(journal);
+        }
+
+        try (Journal reopened = new Journal(copy.toString())) {
+            reopened.append("BOOK", "DELETE", "after-restart");
+            reopened.commit();
+        }
+        try (Journal again = new Journal(copy.toString())) {
+            assertEquals(List.of("first", "after-restart"), ids(again.readRecords()));
+        }
+    }
+
+    // An interrupt during the write closes the channel; the records stay
+    // buffered and the next flush, from a thread that is not interrupted,
+    // reopens the file and writes each of them once
+    @Test
+    void flushRetriesAfterFailedWrite() throws Exception {
+        Path file = dir.resolve("journal.log");
+        try (Journal journal = new Journal(file.toString())) {
+            journal.append("BOOK", "DELETE", "before");
+            journal.commit();
+            journal.append("BOOK", "DELETE", "retried");
+            journal.endTransaction();
+
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread interrupted = new Thread(() -> {
+                Thread.currentThread().interrupt();
+                try {
+                    journal.flush();
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            interrupted.start();
+            interrupted.join();
+            assertTrue(failure.get() instanceof ClosedByInterruptException, String.valueOf(failure.get()));
+
+            journal.flush();
+            assertEquals(Files.size(file), journal.flushedLength());
+            journal.append("BOOK", "DELETE", "after");
+            journal.commit();
+        }
+
+        try (Journal reopened = new Journal(file.toString())) {
+            assertEquals(List.of("before", "retried", "after"), ids(reopened.readRecords()));
+        }
+    }
+}